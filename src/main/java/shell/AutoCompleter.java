@@ -1,8 +1,11 @@
 package shell;
 
-import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
@@ -18,7 +21,11 @@ import org.jline.terminal.TerminalBuilder;
 public class AutoCompleter {
     private final String prompt;
     private final ShellContext context;
+    private final CommandCatalog catalog = new CommandCatalog();
+    private final CatalogRefresher refresher = new CatalogRefresher(catalog);
+    private final DirectoryListingCache listings = new DirectoryListingCache();
     private String lastTabBuffer = null;
+    private volatile boolean indexing;
 
     public AutoCompleter(String prompt) {
         this(prompt, null);
@@ -47,6 +54,8 @@ public class AutoCompleter {
                     .build();
             reader.getWidgets().put("custom-tab", () -> handleTab(reader));
             reader.getKeyMaps().get(LineReader.MAIN).bind(new Reference("custom-tab"), "\t");
+            // Start indexing PATH now so it is usually ready before the first Tab.
+            startIndexing();
             return reader;
         } catch (Exception e) {
             return null;
@@ -91,55 +100,57 @@ public class AutoCompleter {
     }
 
     private List<String> findCommandMatches(String token) {
-        List<String> matches = new ArrayList<>();
         if (token == null || token.isEmpty()) {
-            return matches;
+            return new ArrayList<>();
         }
-
-        java.util.Set<String> unique = new java.util.TreeSet<>();
-        for (String builtin : CommandResolver.getBuiltinMap().keySet()) {
-            if (builtin.startsWith(token)) {
-                unique.add(builtin);
-            }
+        // Tab only reads the current snapshot; a PATH change just retargets the background indexer.
+        if (indexing) {
+            refresher.watch(currentPath());
         }
+        return catalog.matches(token);
+    }
 
-        String pathEnv = context != null ? context.getEnv("PATH") : System.getenv("PATH");
-        if (pathEnv != null && !pathEnv.isBlank()) {
-            String[] dirs = pathEnv.split(File.pathSeparator);
-            for (String dir : dirs) {
-                if (dir == null) {
-                    continue;
-                }
-                String dirPath = dir.isEmpty() ? "." : dir;
-                if (dirPath.isBlank()) {
-                    continue;
-                }
-                File directory = new File(dirPath);
-                File[] entries = directory.listFiles();
-                if (entries == null) {
-                    continue;
-                }
-                for (File entry : entries) {
-                    String name = entry.getName();
-                    if (entry.isFile() && entry.canExecute() && name.startsWith(token)) {
-                        unique.add(name);
-                    }
-                }
-            }
-        }
+    private void startIndexing() {
+        indexing = true;
+        refresher.watch(currentPath());
+    }
 
-        matches.addAll(unique);
-        return matches;
+    // For callers without a line reader (tests): starts indexing and waits for the first listing.
+    boolean awaitIndex(long timeoutMillis) {
+        startIndexing();
+        return refresher.awaitReady(timeoutMillis);
+    }
+
+    private String currentPath() {
+        return context != null ? context.getEnv("PATH") : System.getenv("PATH");
     }
 
     boolean handleTab(LineReader reader) {
-        String prefix = currentCommandPrefix(reader);
-        if (prefix == null || prefix.isEmpty()) {
-            lastTabBuffer = null;
-            return true;
+        String buffer = reader.getBuffer().toString();
+        CompletionWord word = currentWord(buffer, reader.getBuffer().cursor());
+        if (word.commandPosition()) {
+            if (word.value().isEmpty()) {
+                lastTabBuffer = null;
+                return true;
+            }
+            List<String> matches = findCommandMatches(word.value());
+            return complete(reader, word, matches, matches, null);
         }
 
-        List<String> matches = findCommandMatches(prefix);
+        List<String> matches = new ArrayList<>();
+        List<String> display = new ArrayList<>();
+        Set<String> directories = new HashSet<>();
+        findPathMatches(word.value(), matches, display, directories);
+        return complete(reader, word, matches, display, directories);
+    }
+
+    // directories == null means command completion, where every match ends with a space.
+    private boolean complete(LineReader reader,
+                             CompletionWord word,
+                             List<String> matches,
+                             List<String> display,
+                             Set<String> directories) {
+        String prefix = word.value();
         if (matches.isEmpty()) {
             ringBell(reader);
             lastTabBuffer = null;
@@ -148,9 +159,13 @@ public class AutoCompleter {
 
         if (matches.size() == 1) {
             String match = matches.get(0);
-            if (!match.equals(prefix)) {
-                reader.getBuffer().write(match.substring(prefix.length()) + " ");
+            insert(reader, word, match.substring(prefix.length()));
+            if (directories != null && directories.contains(match)) {
+                reader.getBuffer().write("/");
             } else {
+                if (word.quote() != 0) {
+                    reader.getBuffer().write(word.quote());
+                }
                 reader.getBuffer().write(" ");
             }
             lastTabBuffer = null;
@@ -159,7 +174,7 @@ public class AutoCompleter {
 
         String commonPrefix = longestCommonPrefix(matches);
         if (commonPrefix.length() > prefix.length()) {
-            reader.getBuffer().write(commonPrefix.substring(prefix.length()));
+            insert(reader, word, commonPrefix.substring(prefix.length()));
             lastTabBuffer = null;
             return true;
         }
@@ -170,17 +185,18 @@ public class AutoCompleter {
             if (System.console() == null
                     || terminalType == null
                     || terminalType.startsWith("dumb")) {
-                System.out.print("\n" + String.join("  ", matches) + "\n" + prompt + prefix);
+                System.out.print("\n" + String.join("  ", display) + "\n" + prompt + buffer);
                 System.out.flush();
             } else {
+                int cursor = reader.getBuffer().cursor();
                 java.io.Writer writer = reader.getTerminal().writer();
                 try {
-                    writer.write("\n" + String.join("  ", matches) + "\n");
+                    writer.write("\n" + String.join("  ", display) + "\n");
                     writer.flush();
                 } catch (java.io.IOException e) {
                     // Ignore write failures in non-interactive terminals.
                 }
-                reader.getBuffer().cursor(prefix.length());
+                reader.getBuffer().cursor(cursor);
                 reader.callWidget(LineReader.REDRAW_LINE);
             }
         } else {
@@ -190,26 +206,136 @@ public class AutoCompleter {
         return true;
     }
 
-    private String currentCommandPrefix(LineReader reader) {
-        String line = reader.getBuffer().toString();
-        int cursor = reader.getBuffer().cursor();
-        int start = 0;
-        while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
-            start++;
+    private void findPathMatches(String value,
+                                 List<String> matches,
+                                 List<String> display,
+                                 Set<String> directories) {
+        int slash = value.lastIndexOf('/');
+        String dirPart = value.substring(0, slash + 1);
+        String namePrefix = value.substring(slash + 1);
+        Path dir = resolveDirectory(dirPart);
+        if (dir == null) {
+            return;
         }
-        if (cursor < start) {
-            return "";
+        for (String name : listings.matches(dir, namePrefix)) {
+            String match = dirPart + name;
+            matches.add(match);
+            // Only the k matches are stat'ed, never the whole directory.
+            if (Files.isDirectory(dir.resolve(name))) {
+                directories.add(match);
+                display.add(name + "/");
+            } else {
+                display.add(name);
+            }
         }
-        int end = start;
-        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
-            end++;
+    }
+
+    private Path resolveDirectory(String dirPart) {
+        String workspace = context != null ? context.getWorkspace() : null;
+        if (workspace == null || workspace.isBlank()) {
+            workspace = System.getProperty("user.dir");
         }
-        if (cursor > end) {
+        try {
+            if (dirPart.equals("~") || dirPart.startsWith("~/")) {
+                String home = context != null ? context.getEnv("HOME") : null;
+                if (home == null || home.isBlank()) {
+                    home = System.getenv("HOME");
+                }
+                if (home == null || home.isBlank()) {
+                    return null;
+                }
+                return Path.of(home + dirPart.substring(1)).normalize();
+            }
+            if (dirPart.isEmpty()) {
+                return Path.of(workspace);
+            }
+            return Path.of(workspace).resolve(dirPart).normalize();
+        } catch (java.nio.file.InvalidPathException e) {
             return null;
         }
-        return line.substring(start, cursor);
     }
 
+    // Writes completed text so that CCParser reads it back unchanged inside the word's quoting.
+    private void insert(LineReader reader, CompletionWord word, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (word.quote() == '\'') {
+                if (ch == '\'') {
+                    escaped.append("'\\''");
+                    continue;
+                }
+            } else if (word.quote() == '"') {
+                if (ch == '"' || ch == '\\') {
+                    escaped.append('\\');
+                }
+            } else if (Character.isWhitespace(ch) || "\\'\"|><&;".indexOf(ch) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(ch);
+        }
+        reader.getBuffer().write(escaped.toString());
+    }
+
+    // Locates the word ending at the cursor and whether it is in command or argument position.
+    static CompletionWord currentWord(String line, int cursor) {
+        String head = line.substring(0, Math.min(Math.max(cursor, 0), line.length()));
+        CCParser.TokenSpans spans = new CCParser.TokenSpans();
+        CCParser.tokenizeSpans(head, spans);
+
+        int count = spans.size();
+        boolean touching = count > 0
+                && spans.kind(count - 1) == CCParser.KIND_WORD
+                && spans.end(count - 1) == head.length();
+        int words = 0;
+        boolean afterRedirect = false;
+        for (int i = 0; i < (touching ? count - 1 : count); i++) {
+            int kind = spans.kind(i);
+            if (kind == CCParser.KIND_WORD) {
+                if (afterRedirect) {
+                    afterRedirect = false;
+                } else {
+                    words++;
+                }
+            } else if (kind == CCParser.KIND_PIPE || CCParser.isListOperator(kind)) {
+                words = 0;
+                afterRedirect = false;
+            } else {
+                afterRedirect = true;
+            }
+        }
+        boolean commandPosition = words == 0 && !afterRedirect;
+        if (!touching) {
+            return new CompletionWord("", (char) 0, commandPosition);
+        }
+        String value = CCParser.spanText(head, spans, count - 1);
+        return new CompletionWord(value, openQuote(head, spans.start(count - 1)), commandPosition);
+    }
+
+    private static char openQuote(String head, int start) {
+        char quote = 0;
+        for (int i = start; i < head.length(); i++) {
+            char ch = head.charAt(i);
+            if (quote == 0) {
+                if (ch == '\\') {
+                    i++;
+                } else if (ch == '\'' || ch == '"') {
+                    quote = ch;
+                }
+            } else if (quote == '"' && ch == '\\') {
+                i++;
+            } else if (ch == quote) {
+                quote = 0;
+            }
+        }
+        return quote;
+    }
+
+    record CompletionWord(String value, char quote, boolean commandPosition) {}
+
     private void ringBell(LineReader reader) {
         String terminalType = reader.getTerminal().getType();
         if (System.console() == null
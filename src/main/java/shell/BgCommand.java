@@ -0,0 +1,39 @@
+package shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public class BgCommand implements CommandRunner {
+    private static BgCommand instance;
+
+    private BgCommand() {
+    }
+
+    public static BgCommand getInstance() {
+        if (instance == null) {
+            instance = new BgCommand();
+        }
+        return instance;
+    }
+
+    // Jobs cannot be stopped here, so every job bg finds is either running or finished.
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        ShellContext context = cmd.getContext();
+        List<String> args = cmd.getArgList();
+        String spec = args == null || args.isEmpty() ? null : args.get(0);
+        JobTable.Job job = context != null ? context.getJobs().find(spec) : null;
+        try (BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            if (job == null) {
+                stderr.println("bg: " + (spec == null ? "current" : spec) + ": no such job");
+                cmd.setExitStatus(1);
+            } else if (job.isDone()) {
+                stderr.println("bg: job has terminated");
+                cmd.setExitStatus(1);
+            } else {
+                stderr.println("bg: job " + job.id() + " already in background");
+            }
+        }
+    }
+}
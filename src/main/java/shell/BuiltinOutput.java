@@ -0,0 +1,132 @@
+package shell;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered text sink for builtin output. Text is encoded to UTF-8 with one reused encoder
+ * straight into a byte buffer that reaches the underlying stream only when it fills, when the
+ * builtin finishes ({@link #close}), or at each line end when writing to the interactive terminal.
+ * A pipe or redirect file therefore sees a few large writes instead of one per line.
+ *
+ * <p>Like {@link java.io.PrintStream}, write failures are swallowed; {@link #checkError} reports
+ * them so a builtin can stop producing output nobody reads (e.g. {@code history | head -1}).
+ * Closing flushes but leaves the underlying stream open.
+ */
+public final class BuiltinOutput implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final OutputStream out;
+    private final boolean flushLines;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean error;
+
+    private BuiltinOutput(OutputStream out, boolean flushLines) {
+        this.out = out;
+        this.flushLines = flushLines;
+    }
+
+    public static BuiltinOutput of(OutputStream out) {
+        return new BuiltinOutput(out, System.console() != null && ExternalCommand.isProcessStdout(out));
+    }
+
+    public BuiltinOutput print(CharSequence text) {
+        if (error || text == null || text.isEmpty()) {
+            return this;
+        }
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (!result.isOverflow()) {
+                break;
+            }
+            drain();
+            if (error) {
+                break;
+            }
+        }
+        encoder.reset();
+        return this;
+    }
+
+    public BuiltinOutput print(char ch) {
+        if (ch < 0x80) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            if (!error) {
+                buffer.put((byte) ch);
+            }
+            return this;
+        }
+        return print(String.valueOf(ch));
+    }
+
+    // Right-aligns value in width columns, like printf("%<width>d") without a Formatter.
+    public BuiltinOutput printPadded(long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            print(' ');
+        }
+        return print(digits);
+    }
+
+    public BuiltinOutput println(CharSequence text) {
+        print(text);
+        return println();
+    }
+
+    public BuiltinOutput println() {
+        print(LINE_SEPARATOR);
+        if (flushLines) {
+            flush();
+        }
+        return this;
+    }
+
+    public boolean checkError() {
+        return error;
+    }
+
+    public void flush() {
+        drain();
+        if (error) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            error = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void drain() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        try {
+            if (!error) {
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        } catch (IOException e) {
+            error = true;
+        } finally {
+            buffer.clear();
+        }
+    }
+}
@@ -12,11 +12,22 @@ public final class CCParser {
     }
 
     public static Command parse(ShellContext context, String inputString) {
-        return parseTokens(context, extractWords(tokenizeWithOperators(inputString)));
+        return parseTokens(context, parseArguments(inputString));
     }
 
     public static List<String> parseArguments(String inputString) {
-        return extractWords(tokenizeWithOperators(inputString));
+        List<String> words = new ArrayList<>();
+        if (inputString == null || inputString.isEmpty()) {
+            return words;
+        }
+        TokenSpans spans = SPANS.get();
+        tokenizeSpans(inputString, spans);
+        for (int i = 0; i < spans.size(); i++) {
+            if (spans.kind(i) == KIND_WORD) {
+                words.add(spanText(inputString, spans, i));
+            }
+        }
+        return words;
     }
 
     public static ParsedLine parseLine(String inputString) {
@@ -24,64 +35,193 @@ public final class CCParser {
     }
 
     public static ParsedLine parseLine(ShellContext context, String inputString) {
-        List<Token> tokens = tokenizeWithOperators(inputString);
-        RedirectType redirectType = null;
-        List<String> commandTokens = new ArrayList<>();
-        List<String> redirectTokens = null;
-        boolean afterRedirect = false;
-
-        for (Token token : tokens) {
-            if (!afterRedirect && isRedirect(token.type)) {
-                redirectType = toRedirectType(token.type);
-                afterRedirect = true;
-                redirectTokens = new ArrayList<>();
+        Pipeline pipeline = parsePipeline(inputString);
+        if (pipeline.stages().isEmpty()) {
+            return new ParsedLine(parseTokens(context, List.of()), List.of());
+        }
+        return toParsedLine(context, pipeline.stages().get(0));
+    }
+
+    // The first pipeline of the line; see parseList for lines with several.
+    public static Pipeline parsePipeline(String inputString) {
+        List<Pipeline> pipelines = parseList(inputString);
+        return pipelines.isEmpty() ? new Pipeline(List.of()) : pipelines.get(0);
+    }
+
+    // Single tokenizer pass; the resulting tree does not depend on the shell context.
+    // ";", "&&", "||" and "&" end a pipeline. Each pipeline records the operator joining it to the
+    // one before, and "&" marks the and-or list it ends as a background job.
+    public static List<Pipeline> parseList(String inputString) {
+        if (inputString == null || inputString.isEmpty()) {
+            return List.of();
+        }
+        TokenSpans spans = SPANS.get();
+        tokenizeSpans(inputString, spans);
+        if (spans.size() == 0) {
+            return List.of();
+        }
+
+        List<Pipeline> pipelines = new ArrayList<>();
+        List<Stage> stages = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        List<Redirect> redirects = new ArrayList<>();
+        RedirectType pendingRedirect = null;
+        int pipelineStart = -1;
+        ListOperator operator = ListOperator.SEQUENCE;
+
+        for (int i = 0; i < spans.size(); i++) {
+            int kind = spans.kind(i);
+            boolean listOperator = isListOperator(kind);
+            if (!listOperator && pipelineStart < 0) {
+                pipelineStart = spans.start(i);
+            }
+            if (kind == KIND_WORD) {
+                String text = spanText(inputString, spans, i);
+                if (pendingRedirect != null) {
+                    redirects.add(new Redirect(pendingRedirect, text));
+                    pendingRedirect = null;
+                } else {
+                    words.add(text);
+                }
                 continue;
             }
 
-            if (token.type == TokenType.PIPE) {
-                if (afterRedirect) {
-                    break;
-                }
+            if (pendingRedirect != null) {
+                // Operator without a target, e.g. "echo >" or "echo > | cat".
+                redirects.add(new Redirect(pendingRedirect, null));
+                pendingRedirect = null;
+            }
+
+            if (kind == KIND_PIPE) {
+                stages.add(new Stage(List.copyOf(words), List.copyOf(redirects)));
+                words.clear();
+                redirects.clear();
                 continue;
             }
 
-            if (token.type == TokenType.WORD) {
-                if (afterRedirect) {
-                    redirectTokens.add(token.text);
-                } else {
-                    commandTokens.add(token.text);
+            if (listOperator) {
+                if (pipelineStart < 0) {
+                    throw new SyntaxException("syntax error near unexpected token `"
+                            + inputString.substring(spans.start(i), spans.end(i)) + "'");
                 }
+                stages.add(new Stage(List.copyOf(words), List.copyOf(redirects)));
+                String source = inputString.substring(pipelineStart, spans.start(i)).trim();
+                pipelines.add(new Pipeline(List.copyOf(stages), kind == KIND_BACKGROUND, operator, source));
+                stages.clear();
+                words.clear();
+                redirects.clear();
+                pipelineStart = -1;
+                operator = kind == KIND_AND ? ListOperator.AND
+                        : kind == KIND_OR ? ListOperator.OR
+                        : ListOperator.SEQUENCE;
+                continue;
             }
+
+            pendingRedirect = REDIRECT_KINDS[kind];
         }
 
-        Command command = parseTokens(context, commandTokens);
-        if (redirectType == null) {
-            return new ParsedLine(command, null, null);
+        if (pendingRedirect != null) {
+            redirects.add(new Redirect(pendingRedirect, null));
         }
-        return new ParsedLine(command, redirectTokens, redirectType);
+        if (pipelineStart >= 0) {
+            stages.add(new Stage(List.copyOf(words), List.copyOf(redirects)));
+            String source = inputString.substring(pipelineStart).trim();
+            pipelines.add(new Pipeline(List.copyOf(stages), false, operator, source));
+        } else if (operator != ListOperator.SEQUENCE) {
+            // "a &&" with nothing after it.
+            throw new SyntaxException("syntax error: unexpected end of file");
+        }
+        return List.copyOf(pipelines);
     }
 
-    public static List<List<String>> splitPipelineTokens(String inputString) {
-        List<List<String>> parts = new ArrayList<>();
-        if (inputString == null || inputString.isEmpty()) {
-            parts.add(new ArrayList<>());
-            return parts;
+    // Separators between pipelines, as opposed to "|" between stages.
+    static boolean isListOperator(int kind) {
+        return kind == KIND_BACKGROUND || kind == KIND_SEQUENCE || kind == KIND_AND || kind == KIND_OR;
+    }
+
+    /**
+     * Substitutes {@code $?}, {@code $PIPESTATUS} and {@code ${PIPESTATUS[n]}} (or {@code [@]},
+     * {@code [*]}) in the pipeline's source, outside single quotes, and parses it again. Called
+     * just before the pipeline runs so the statuses are those of the pipelines before it.
+     */
+    public static Pipeline expandStatus(Pipeline pipeline, int[] pipeStatus) {
+        if (!pipeline.hasExpansions()) {
+            return pipeline;
+        }
+        String expanded = expandStatus(pipeline.source(), pipeStatus);
+        if (expanded.equals(pipeline.source())) {
+            return pipeline;
         }
+        // Statuses are digits and spaces, so the text still parses as exactly one pipeline.
+        List<Pipeline> reparsed = parseList(expanded);
+        List<Stage> stages = reparsed.isEmpty() ? List.of() : reparsed.get(0).stages();
+        return new Pipeline(stages, pipeline.background(), pipeline.operator(), expanded);
+    }
 
-        List<Token> tokens = tokenizeWithOperators(inputString);
-        List<String> current = new ArrayList<>();
-        for (Token token : tokens) {
-            if (token.type == TokenType.PIPE) {
-                parts.add(current);
-                current = new ArrayList<>();
-                continue;
+    static String expandStatus(String text, int[] pipeStatus) {
+        StringBuilder expanded = new StringBuilder(text.length());
+        boolean inSingleQuotes = false;
+        boolean inDoubleQuotes = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (inSingleQuotes) {
+                inSingleQuotes = ch != '\'';
+            } else if (ch == '\\' && i + 1 < text.length()) {
+                // An escaped "$" stays literal.
+                expanded.append(ch);
+                ch = text.charAt(++i);
+            } else if (ch == '\'' && !inDoubleQuotes) {
+                inSingleQuotes = true;
+            } else if (ch == '"') {
+                inDoubleQuotes = !inDoubleQuotes;
+            } else if (ch == '$') {
+                if (text.startsWith("$?", i)) {
+                    expanded.append(pipeStatus[pipeStatus.length - 1]);
+                    i++;
+                    continue;
+                }
+                if (text.startsWith("${PIPESTATUS[", i)) {
+                    int close = text.indexOf("]}", i);
+                    if (close > 0) {
+                        expanded.append(pipeStatusElement(text.substring(i + "${PIPESTATUS[".length(), close), pipeStatus));
+                        i = close + 1;
+                        continue;
+                    }
+                }
+                int end = i + "$PIPESTATUS".length();
+                if (text.startsWith("$PIPESTATUS", i)
+                        && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)) && text.charAt(end) != '_')) {
+                    expanded.append(pipeStatus[0]);
+                    i = end - 1;
+                    continue;
+                }
             }
-            if (token.type == TokenType.WORD) {
-                current.add(token.text);
+            expanded.append(ch);
+        }
+        return expanded.toString();
+    }
+
+    private static String pipeStatusElement(String index, int[] pipeStatus) {
+        if (index.equals("@") || index.equals("*")) {
+            StringBuilder all = new StringBuilder();
+            for (int status : pipeStatus) {
+                if (!all.isEmpty()) {
+                    all.append(' ');
+                }
+                all.append(status);
             }
+            return all.toString();
+        }
+        try {
+            int element = Integer.parseInt(index.trim());
+            return element >= 0 && element < pipeStatus.length ? Integer.toString(pipeStatus[element]) : "";
+        } catch (NumberFormatException e) {
+            return "";
         }
-        parts.add(current);
-        return parts;
+    }
+
+    public static ParsedLine toParsedLine(ShellContext context, Stage stage) {
+        return new ParsedLine(parseTokens(context, stage.words()), stage.redirects());
     }
 
     static Command parseTokens(ShellContext context, List<String> tokens) {
@@ -113,173 +253,335 @@ public final class CCParser {
         return command;
     }
 
-    public record ParsedLine(Command command, List<String> redirectTokens, RedirectType redirectType) {}
+    public record ParsedLine(Command command, List<Redirect> redirects) {}
+
+    // operator joins the pipeline to the previous one; source is its text, for expansion and jobs.
+    public record Pipeline(List<Stage> stages, boolean background, ListOperator operator, String source) {
+        public Pipeline(List<Stage> stages) {
+            this(stages, false, ListOperator.SEQUENCE, null);
+        }
+
+        public boolean hasExpansions() {
+            return source != null && source.indexOf('$') >= 0;
+        }
+    }
+
+    public enum ListOperator {
+        SEQUENCE,
+        AND,
+        OR
+    }
+
+    public static final class SyntaxException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public SyntaxException(String message) {
+            super(message);
+        }
+    }
+
+    public record Stage(List<String> words, List<Redirect> redirects) {
+        public boolean isEmpty() {
+            return words.isEmpty();
+        }
+    }
+
+    public record Redirect(RedirectType type, String target) {
+        public boolean isStderr() {
+            return type == RedirectType.STDERR || type == RedirectType.STDERR_APPEND;
+        }
+
+        public boolean isAppend() {
+            return type == RedirectType.STDOUT_APPEND || type == RedirectType.STDERR_APPEND;
+        }
+
+        public boolean isInput() {
+            return type == RedirectType.STDIN || type == RedirectType.HERE_STRING;
+        }
+    }
 
     public enum RedirectType {
         STDOUT,
         STDERR,
         STDOUT_APPEND,
-        STDERR_APPEND
+        STDERR_APPEND,
+        STDIN,
+        HERE_STRING
     }
 
-    private enum TokenType {
-        WORD,
-        PIPE,
-        REDIRECT_STDOUT,
-        REDIRECT_STDOUT_APPEND,
-        REDIRECT_STDERR,
-        REDIRECT_STDERR_APPEND
-    }
+    // Span kinds; the index doubles as a lookup into REDIRECT_KINDS.
+    static final int KIND_WORD = 0;
+    static final int KIND_PIPE = 1;
+    static final int KIND_STDOUT = 2;
+    static final int KIND_STDOUT_APPEND = 3;
+    static final int KIND_STDERR = 4;
+    static final int KIND_STDERR_APPEND = 5;
+    static final int KIND_STDIN = 6;
+    static final int KIND_HERE_STRING = 7;
+    static final int KIND_BACKGROUND = 8;
+    static final int KIND_SEQUENCE = 9;
+    static final int KIND_AND = 10;
+    static final int KIND_OR = 11;
+    private static final int KIND_MASK = 0xf;
+    // Set on words whose text differs from the raw slice because of quotes or backslashes.
+    static final int FLAG_UNQUOTE = 0x10;
+
+    private static final RedirectType[] REDIRECT_KINDS = {
+            null,
+            null,
+            RedirectType.STDOUT,
+            RedirectType.STDOUT_APPEND,
+            RedirectType.STDERR,
+            RedirectType.STDERR_APPEND,
+            RedirectType.STDIN,
+            RedirectType.HERE_STRING,
+            null,
+            null,
+            null,
+            null
+    };
+
+    private static final ThreadLocal<TokenSpans> SPANS = ThreadLocal.withInitial(TokenSpans::new);
+
+    /**
+     * Flat buffer of (start, end, flags) triples over the input string. Reused across lines so
+     * tokenizing does not allocate once the buffer has grown to fit the longest line.
+     */
+    static final class TokenSpans {
+        private int[] data = new int[3 * 16];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
 
-    private record Token(TokenType type, String text) {}
+        int size() {
+            return size;
+        }
 
-    private static boolean isRedirect(TokenType type) {
-        return type == TokenType.REDIRECT_STDOUT
-                || type == TokenType.REDIRECT_STDOUT_APPEND
-                || type == TokenType.REDIRECT_STDERR
-                || type == TokenType.REDIRECT_STDERR_APPEND;
-    }
+        int start(int index) {
+            return data[3 * index];
+        }
 
-    private static RedirectType toRedirectType(TokenType type) {
-        return switch (type) {
-            case REDIRECT_STDOUT -> RedirectType.STDOUT;
-            case REDIRECT_STDOUT_APPEND -> RedirectType.STDOUT_APPEND;
-            case REDIRECT_STDERR -> RedirectType.STDERR;
-            case REDIRECT_STDERR_APPEND -> RedirectType.STDERR_APPEND;
-            default -> null;
-        };
-    }
+        int end(int index) {
+            return data[3 * index + 1];
+        }
 
-    private static List<String> extractWords(List<Token> tokens) {
-        List<String> words = new ArrayList<>();
-        for (Token token : tokens) {
-            if (token.type == TokenType.WORD) {
-                words.add(token.text);
+        int flags(int index) {
+            return data[3 * index + 2];
+        }
+
+        int kind(int index) {
+            return data[3 * index + 2] & KIND_MASK;
+        }
+
+        void add(int start, int end, int flags) {
+            int offset = 3 * size;
+            if (offset + 3 > data.length) {
+                data = java.util.Arrays.copyOf(data, data.length * 2);
             }
+            data[offset] = start;
+            data[offset + 1] = end;
+            data[offset + 2] = flags;
+            size++;
         }
-        return words;
     }
 
-    private static List<Token> tokenizeWithOperators(String inputString) {
-        List<Token> tokens = new ArrayList<>();
-        if (inputString == null || inputString.isEmpty()) {
-            return tokens;
+    // Only words with quotes or escapes need a rebuilt string; plain words are substrings.
+    static String spanText(String inputString, TokenSpans spans, int index) {
+        int start = spans.start(index);
+        int end = spans.end(index);
+        if ((spans.flags(index) & FLAG_UNQUOTE) == 0) {
+            return inputString.substring(start, end);
+        }
+        return unquote(inputString, start, end);
+    }
+
+    static void tokenizeSpans(String inputString, TokenSpans spans) {
+        spans.clear();
+        if (inputString == null) {
+            return;
         }
 
-        StringBuilder current = new StringBuilder();
+        int length = inputString.length();
+        int wordStart = -1;
+        int wordFlags = KIND_WORD;
         boolean inSingleQuotes = false;
         boolean inDoubleQuotes = false;
-        boolean tokenStarted = false;
 
-        for (int i = 0; i < inputString.length(); i++) {
+        for (int i = 0; i < length; i++) {
             char ch = inputString.charAt(i);
 
-            if (!inSingleQuotes && !inDoubleQuotes) {
+            if (inSingleQuotes) {
+                if (ch == '\'') {
+                    inSingleQuotes = false;
+                }
+                continue;
+            }
+
+            if (inDoubleQuotes) {
                 if (ch == '\\') {
-                    if (i + 1 < inputString.length()) {
-                        current.append(inputString.charAt(i + 1));
-                        tokenStarted = true;
-                        i++;
-                    } else {
-                        current.append(ch);
-                        tokenStarted = true;
+                    if (i + 1 < length) {
+                        char next = inputString.charAt(i + 1);
+                        if (next == '"' || next == '\\') {
+                            i++;
+                        }
                     }
-                    continue;
+                } else if (ch == '"') {
+                    inDoubleQuotes = false;
                 }
+                continue;
+            }
 
-                if (ch == '|') {
-                    if (tokenStarted) {
-                        tokens.add(new Token(TokenType.WORD, current.toString()));
-                        current.setLength(0);
-                        tokenStarted = false;
-                    }
-                    tokens.add(new Token(TokenType.PIPE, null));
-                    continue;
+            if (ch == '\\') {
+                if (wordStart < 0) {
+                    wordStart = i;
                 }
+                wordFlags |= FLAG_UNQUOTE;
+                if (i + 1 < length) {
+                    i++;
+                }
+                continue;
+            }
 
-                if ((ch == '1' || ch == '2')
-                        && i + 1 < inputString.length()
-                        && inputString.charAt(i + 1) == '>') {
-                    if (tokenStarted) {
-                        tokens.add(new Token(TokenType.WORD, current.toString()));
-                        current.setLength(0);
-                        tokenStarted = false;
-                    }
-                    boolean append = i + 2 < inputString.length() && inputString.charAt(i + 2) == '>';
-                    if (ch == '1') {
-                        tokens.add(new Token(append
-                                ? TokenType.REDIRECT_STDOUT_APPEND
-                                : TokenType.REDIRECT_STDOUT, null));
-                    } else {
-                        tokens.add(new Token(append
-                                ? TokenType.REDIRECT_STDERR_APPEND
-                                : TokenType.REDIRECT_STDERR, null));
-                    }
-                    i += append ? 2 : 1;
-                    continue;
+            if (ch == '\'' || ch == '"') {
+                if (wordStart < 0) {
+                    wordStart = i;
                 }
+                wordFlags |= FLAG_UNQUOTE;
+                inSingleQuotes = ch == '\'';
+                inDoubleQuotes = ch == '"';
+                continue;
+            }
 
-                if (ch == '>') {
-                    if (tokenStarted) {
-                        tokens.add(new Token(TokenType.WORD, current.toString()));
-                        current.setLength(0);
-                        tokenStarted = false;
-                    }
-                    boolean append = i + 1 < inputString.length() && inputString.charAt(i + 1) == '>';
-                    tokens.add(new Token(append
-                            ? TokenType.REDIRECT_STDOUT_APPEND
-                            : TokenType.REDIRECT_STDOUT, null));
-                    if (append) {
-                        i++;
-                    }
-                    continue;
+            if (ch == '|' || ch == '&' || ch == ';') {
+                if (wordStart >= 0) {
+                    spans.add(wordStart, i, wordFlags);
+                    wordStart = -1;
+                    wordFlags = KIND_WORD;
+                }
+                boolean doubled = ch != ';' && i + 1 < length && inputString.charAt(i + 1) == ch;
+                int kind = switch (ch) {
+                    case '|' -> doubled ? KIND_OR : KIND_PIPE;
+                    case '&' -> doubled ? KIND_AND : KIND_BACKGROUND;
+                    default -> KIND_SEQUENCE;
+                };
+                spans.add(i, doubled ? i + 2 : i + 1, kind);
+                if (doubled) {
+                    i++;
                 }
+                continue;
+            }
+
+            if ((ch == '1' || ch == '2')
+                    && i + 1 < length
+                    && inputString.charAt(i + 1) == '>') {
+                if (wordStart >= 0) {
+                    spans.add(wordStart, i, wordFlags);
+                    wordStart = -1;
+                    wordFlags = KIND_WORD;
+                }
+                boolean append = i + 2 < length && inputString.charAt(i + 2) == '>';
+                int width = append ? 3 : 2;
+                if (ch == '1') {
+                    spans.add(i, i + width, append ? KIND_STDOUT_APPEND : KIND_STDOUT);
+                } else {
+                    spans.add(i, i + width, append ? KIND_STDERR_APPEND : KIND_STDERR);
+                }
+                i += width - 1;
+                continue;
+            }
+
+            if (ch == '>') {
+                if (wordStart >= 0) {
+                    spans.add(wordStart, i, wordFlags);
+                    wordStart = -1;
+                    wordFlags = KIND_WORD;
+                }
+                boolean append = i + 1 < length && inputString.charAt(i + 1) == '>';
+                spans.add(i, append ? i + 2 : i + 1, append ? KIND_STDOUT_APPEND : KIND_STDOUT);
+                if (append) {
+                    i++;
+                }
+                continue;
+            }
+
+            if (ch == '<') {
+                if (wordStart >= 0) {
+                    spans.add(wordStart, i, wordFlags);
+                    wordStart = -1;
+                    wordFlags = KIND_WORD;
+                }
+                boolean hereString = inputString.startsWith("<<<", i);
+                spans.add(i, hereString ? i + 3 : i + 1, hereString ? KIND_HERE_STRING : KIND_STDIN);
+                if (hereString) {
+                    i += 2;
+                }
+                continue;
+            }
+
+            if (Character.isWhitespace(ch)) {
+                if (wordStart >= 0) {
+                    spans.add(wordStart, i, wordFlags);
+                    wordStart = -1;
+                    wordFlags = KIND_WORD;
+                }
+                continue;
+            }
+
+            if (wordStart < 0) {
+                wordStart = i;
+            }
+        }
+
+        if (wordStart >= 0) {
+            spans.add(wordStart, length, wordFlags);
+        }
+    }
+
+    private static String unquote(String inputString, int start, int end) {
+        StringBuilder current = new StringBuilder(end - start);
+        boolean inSingleQuotes = false;
+        boolean inDoubleQuotes = false;
+
+        for (int i = start; i < end; i++) {
+            char ch = inputString.charAt(i);
+
+            if (!inSingleQuotes && !inDoubleQuotes && ch == '\\') {
+                if (i + 1 < end) {
+                    current.append(inputString.charAt(i + 1));
+                    i++;
+                } else {
+                    current.append(ch);
+                }
+                continue;
             }
 
             if (inDoubleQuotes && ch == '\\') {
-                if (i + 1 < inputString.length()) {
+                if (i + 1 < end) {
                     char next = inputString.charAt(i + 1);
                     if (next == '"' || next == '\\') {
                         current.append(next);
-                        tokenStarted = true;
                         i++;
                         continue;
                     }
                 }
                 current.append(ch);
-                tokenStarted = true;
                 continue;
             }
 
             if (ch == '\'' && !inDoubleQuotes) {
                 inSingleQuotes = !inSingleQuotes;
-                tokenStarted = true;
                 continue;
             }
 
             if (ch == '"' && !inSingleQuotes) {
                 inDoubleQuotes = !inDoubleQuotes;
-                tokenStarted = true;
-                continue;
-            }
-
-            if (!inSingleQuotes && !inDoubleQuotes && Character.isWhitespace(ch)) {
-                if (tokenStarted) {
-                    tokens.add(new Token(TokenType.WORD, current.toString()));
-                    current.setLength(0);
-                    tokenStarted = false;
-                }
                 continue;
             }
 
             current.append(ch);
-            tokenStarted = true;
-        }
-
-        if (tokenStarted) {
-            tokens.add(new Token(TokenType.WORD, current.toString()));
         }
-
-        return tokens;
+        return current.toString();
     }
 }
@@ -0,0 +1,147 @@
+package shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Keeps a CommandCatalog current by watching the PATH directories from a virtual thread.
+public class CatalogRefresher implements AutoCloseable {
+    private final CommandCatalog catalog;
+    private String pathEnv;
+    private Thread thread;
+    private volatile CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+    // Bumped whenever the watcher is replaced; catalog updates from older watchers are dropped.
+    private volatile long generation;
+    // Held while a watcher updates the catalog, never by watch(), so Tab does not wait on a listing.
+    private final Object updateLock = new Object();
+
+    public CatalogRefresher(CommandCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    // Points the refresher at pathEnv; a no-op while it is already watching the same PATH.
+    public synchronized void watch(String pathEnv) {
+        if (thread != null && Objects.equals(pathEnv, this.pathEnv)) {
+            return;
+        }
+        stop();
+        this.pathEnv = pathEnv;
+        long current = generation;
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        ready = signal;
+        thread = Thread.ofVirtual()
+                .name("completion-index")
+                .start(() -> run(pathEnv, current, signal));
+    }
+
+    // Only a cold start (or a PATH change) has to wait for the initial listing.
+    public boolean awaitReady(long timeoutMillis) {
+        try {
+            ready.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        pathEnv = null;
+    }
+
+    private void stop() {
+        generation++;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    // Runs action unless this watcher has been replaced; false tells the watcher to exit.
+    private boolean update(long watcherGeneration, Runnable action) {
+        synchronized (updateLock) {
+            if (watcherGeneration != generation) {
+                return false;
+            }
+            action.run();
+            return true;
+        }
+    }
+
+    private void run(String pathEnv, long watcherGeneration, CompletableFuture<Void> signal) {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            // Register before listing so nothing created in between is missed.
+            Map<WatchKey, String> keys = new HashMap<>();
+            for (String dir : CommandCatalog.splitPath(pathEnv)) {
+                try {
+                    WatchKey key = Path.of(dir).register(service,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    keys.put(key, dir);
+                } catch (IOException | InvalidPathException e) {
+                    // Missing or unwatchable directory; the initial listing still covers it.
+                }
+            }
+            if (!update(watcherGeneration, () -> catalog.refresh(pathEnv))) {
+                return;
+            }
+            signal.complete(null);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                String dir = keys.get(key);
+                boolean overflow = false;
+                Map<String, Boolean> deltas = new LinkedHashMap<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    File file = new File(dir, name);
+                    deltas.put(name, file.isFile() && file.canExecute());
+                }
+                if (dir != null) {
+                    boolean relist = overflow;
+                    if (!update(watcherGeneration, () -> {
+                        if (relist) {
+                            catalog.relistDirectory(dir);
+                        } else {
+                            catalog.applyDeltas(dir, deltas);
+                        }
+                    })) {
+                        return;
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped or retargeted.
+        } catch (IOException e) {
+            // No watch support; fall back to a one-off listing.
+            update(watcherGeneration, () -> catalog.refresh(pathEnv));
+        } finally {
+            signal.complete(null);
+        }
+    }
+}
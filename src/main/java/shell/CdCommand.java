@@ -2,7 +2,6 @@ package shell;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -22,7 +21,6 @@ public class CdCommand implements CommandRunner {
 
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
-        PrintStream stdout = CommandRunner.toPrintStream(out);
         List<String> args = cmd.getArgList();
         ShellContext context = cmd.getContext();
         String target = "";
@@ -40,7 +38,10 @@ public class CdCommand implements CommandRunner {
         }
 
         if (target == null || target.isBlank()) {
-            stdout.println("cd: : No such file or directory");
+            try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+                stdout.println("cd: : No such file or directory");
+            }
+            cmd.setExitStatus(1);
             return;
         }
 
@@ -66,7 +67,10 @@ public class CdCommand implements CommandRunner {
                 cmd.setWorkspace(dirPath.toAbsolutePath().toString());
             }
         } else {
-            stdout.println("cd: " + target + ": No such file or directory");
+            try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+                stdout.println("cd: " + target + ": No such file or directory");
+            }
+            cmd.setExitStatus(1);
         }
     }
 }
@@ -12,6 +12,8 @@ public class Command {
     private List<String> argList;
     private String workspace;
     private ShellContext context;
+    // Set by the runner once the command finishes; the shell resets it before every run.
+    private volatile int exitStatus;
 
     public Command() {
         this.argList = new ArrayList<>();
@@ -53,6 +55,13 @@ public class Command {
             return command;
         }
 
+        if (CommandResolver.isBuiltin(name)) {
+            // Builtins shadow PATH, so there is nothing to look up.
+            command.builtin = true;
+            command.runable = true;
+            return command;
+        }
+
         String execPath = CommandResolver.findExecutable(context, name);
         if (execPath != null) {
             command.path = execPath;
@@ -61,12 +70,6 @@ public class Command {
             command.runable = false;
         }
 
-        if (CommandResolver.isBuiltin(name)) {
-            command.builtin = true;
-            command.runable = true;
-            return command;
-        }
-
         return command;
     }
 
@@ -143,6 +146,14 @@ public class Command {
         this.context = context;
     }
 
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    public void setExitStatus(int exitStatus) {
+        this.exitStatus = exitStatus;
+    }
+
     @Override
     public String toString() {
         return "Command{" +
@@ -0,0 +1,75 @@
+package shell;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CommandCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    public CommandCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CommandCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        // Access order turns the map into an LRU list; the eldest entry is the least recently used.
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > CommandCache.this.capacity;
+            }
+        };
+    }
+
+    public synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    public synchronized void put(Key key, Entry entry) {
+        if (key == null || entry == null) {
+            return;
+        }
+        entries.put(key, entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // The fingerprint is part of the key, so a cd or PATH change never reuses a stale binding.
+    public record Key(String line, ShellContext.Fingerprint fingerprint) {}
+
+    // hashGeneration ties resolved paths to the executable hash; entries from an older one are stale.
+    public record Entry(CCParser.Pipeline pipeline, List<Shell.BoundStage> stages, long hashGeneration) {}
+}
@@ -0,0 +1,184 @@
+package shell;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of builtin and PATH executable names for completion. Prefix queries are a binary
+ * search plus a scan over the matches. Each PATH directory's listing is kept with the mtime it was
+ * taken at, so a refresh only re-lists directories that actually changed; a watcher can instead
+ * push per-file deltas. Readers only ever see an immutable, atomically published snapshot.
+ */
+public class CommandCatalog {
+    private static final String[] EMPTY = new String[0];
+
+    private final Map<String, DirListing> listings = new HashMap<>();
+    // Name -> number of sources (builtins, PATH directories) providing it.
+    private final TreeMap<String, Integer> counts = new TreeMap<>();
+    private String pathEnv;
+    private String[] dirs = EMPTY;
+    private volatile String[] names;
+
+    public CommandCatalog() {
+        for (String builtin : CommandResolver.getBuiltinMap().keySet()) {
+            counts.put(builtin, 1);
+        }
+        names = counts.keySet().toArray(EMPTY);
+    }
+
+    public synchronized void refresh(String pathEnv) {
+        boolean changed = retarget(pathEnv);
+        for (String dir : dirs) {
+            long mtime = new File(dir).lastModified();
+            DirListing listing = listings.get(dir);
+            if (listing != null && listing.mtime == mtime) {
+                continue;
+            }
+            relist(dir, mtime);
+            changed = true;
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    public synchronized void relistDirectory(String dir) {
+        if (!listings.containsKey(dir)) {
+            return;
+        }
+        relist(dir, new File(dir).lastModified());
+        publish();
+    }
+
+    // Applies name -> "is an executable now" updates for one directory and publishes once.
+    public synchronized void applyDeltas(String dir, Map<String, Boolean> deltas) {
+        DirListing listing = listings.get(dir);
+        if (listing == null || deltas.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Boolean> delta : deltas.entrySet()) {
+            String name = delta.getKey();
+            if (delta.getValue()) {
+                if (listing.executables.add(name)) {
+                    counts.merge(name, 1, Integer::sum);
+                }
+            } else if (listing.executables.remove(name)) {
+                release(name);
+            }
+        }
+        listing.mtime = new File(dir).lastModified();
+        publish();
+    }
+
+    public List<String> matches(String prefix) {
+        List<String> matches = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) {
+            return matches;
+        }
+        String[] current = names;
+        int index = Arrays.binarySearch(current, prefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        while (index < current.length && current[index].startsWith(prefix)) {
+            matches.add(current[index]);
+            index++;
+        }
+        return matches;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    static String[] splitPath(String pathEnv) {
+        if (pathEnv == null || pathEnv.isBlank()) {
+            return EMPTY;
+        }
+        List<String> result = new ArrayList<>();
+        for (String dir : pathEnv.split(File.pathSeparator)) {
+            String dirPath = dir.isEmpty() ? "." : dir;
+            if (!dirPath.isBlank() && !result.contains(dirPath)) {
+                result.add(dirPath);
+            }
+        }
+        return result.toArray(EMPTY);
+    }
+
+    private boolean retarget(String pathEnv) {
+        if (pathEnv == null) {
+            pathEnv = "";
+        }
+        if (pathEnv.equals(this.pathEnv)) {
+            return false;
+        }
+        this.pathEnv = pathEnv;
+        dirs = splitPath(pathEnv);
+        Set<String> kept = new HashSet<>(Arrays.asList(dirs));
+        List<String> dropped = new ArrayList<>();
+        for (String dir : listings.keySet()) {
+            if (!kept.contains(dir)) {
+                dropped.add(dir);
+            }
+        }
+        for (String dir : dropped) {
+            for (String name : listings.remove(dir).executables) {
+                release(name);
+            }
+        }
+        return true;
+    }
+
+    private void relist(String dir, long mtime) {
+        DirListing previous = listings.get(dir);
+        if (previous != null) {
+            for (String name : previous.executables) {
+                release(name);
+            }
+        }
+        Set<String> executables = listExecutables(new File(dir));
+        for (String name : executables) {
+            counts.merge(name, 1, Integer::sum);
+        }
+        listings.put(dir, new DirListing(mtime, executables));
+    }
+
+    private void release(String name) {
+        counts.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void publish() {
+        names = counts.keySet().toArray(EMPTY);
+    }
+
+    private static Set<String> listExecutables(File directory) {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return new HashSet<>();
+        }
+        Set<String> executables = new HashSet<>(entries.length * 2);
+        for (File entry : entries) {
+            if (entry.isFile() && entry.canExecute()) {
+                executables.add(entry.getName());
+            }
+        }
+        return executables;
+    }
+
+    private static final class DirListing {
+        private long mtime;
+        private final Set<String> executables;
+
+        private DirListing(long mtime, Set<String> executables) {
+            this.mtime = mtime;
+            this.executables = executables;
+        }
+    }
+}
@@ -12,7 +12,14 @@ public final class CommandResolver {
         put("pwd", PwdCommand.getInstance());
         put("cd", CdCommand.getInstance());
         put("history", HistoryCommand.getInstance());
+        put("hash", HashCommand.getInstance());
+        put("jobs", JobsCommand.getInstance());
+        put("fg", FgCommand.getInstance());
+        put("bg", BgCommand.getInstance());
+        put("wait", WaitCommand.getInstance());
+        put("xargs", XargsCommand.getInstance());
     }};
+    private static final ExecutableHash HASH = new ExecutableHash();
 
     private CommandResolver() {
     }
@@ -25,6 +32,28 @@ public final class CommandResolver {
         return name != null && BUILTIN_MAP.containsKey(name);
     }
 
+    // The runner for an already built command, or null when it is neither a builtin nor runnable.
+    public static CommandRunner runnerFor(Command command) {
+        if (command == null || command.getName() == null || command.getName().isBlank()) {
+            return null;
+        }
+        if (command.isBuiltin()) {
+            return BUILTIN_MAP.get(command.getName());
+        }
+        if (command.isRunable()) {
+            return ExternalCommand.getInstance();
+        }
+        return null;
+    }
+
+    public static ExecutableHash getHash() {
+        return HASH;
+    }
+
+    public static long hashGeneration(ShellContext context) {
+        return HASH.generation(pathOf(context));
+    }
+
     public static String findExecutable(String name) {
         return findExecutable(null, name);
     }
@@ -39,12 +68,20 @@ public final class CommandResolver {
             return direct.getAbsolutePath();
         }
 
-        String pathEnv = context != null ? context.getEnv("PATH") : System.getenv("PATH");
+        String pathEnv = pathOf(context);
         if (pathEnv == null || pathEnv.isBlank()) {
             return null;
         }
 
-        return findExecutableInPath(name, pathEnv);
+        if (name.indexOf(File.separatorChar) >= 0) {
+            // Like bash, only bare names are hashed.
+            return findExecutableInPath(name, pathEnv);
+        }
+        return HASH.lookup(pathEnv, name);
+    }
+
+    private static String pathOf(ShellContext context) {
+        return context != null ? context.getEnv("PATH") : System.getenv("PATH");
     }
 
     private static String findExecutableInPath(String name, String pathEnv) {
@@ -4,8 +4,6 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.nio.charset.StandardCharsets;
 
 public interface CommandRunner {
@@ -32,29 +30,23 @@ public interface CommandRunner {
     }
 
     private InputStream streamFrom(Command source, boolean stdout) {
-        try {
-            PipedInputStream pipeIn = new PipedInputStream(64 * 1024);
-            PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
-            Thread thread = new Thread(() -> {
+        RingBufferPipe pipe = new RingBufferPipe();
+        OutputStream pipeOut = pipe.sink();
+        ShellThreads.start(stdout ? "stdout-stream" : "stderr-stream", source, () -> {
+            try {
+                if (stdout) {
+                    runWithStreams(source, System.in, pipeOut, System.err);
+                } else {
+                    runWithStreams(source, System.in, System.out, pipeOut);
+                }
+            } finally {
                 try {
-                    if (stdout) {
-                        runWithStreams(source, System.in, pipeOut, System.err);
-                    } else {
-                        runWithStreams(source, System.in, System.out, pipeOut);
-                    }
-                } finally {
-                    try {
-                        pipeOut.close();
-                    } catch (IOException e) {
-                        // Ignore close failures on shutdown.
-                    }
+                    pipeOut.close();
+                } catch (IOException e) {
+                    // Ignore close failures on shutdown.
                 }
-            });
-            thread.setDaemon(true);
-            thread.start();
-            return pipeIn;
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+            }
+        });
+        return pipe.source();
     }
 }
@@ -0,0 +1,88 @@
+package shell;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted directory listings for path completion, keyed by directory and reused until the
+ * directory's mtime moves. Repeated Tabs in a huge directory cost one stat instead of a re-list.
+ */
+public class DirectoryListingCache {
+    static final int DEFAULT_CAPACITY = 64;
+    private static final String[] EMPTY = new String[0];
+
+    private final LinkedHashMap<Path, Listing> listings;
+    private long relists;
+
+    public DirectoryListingCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DirectoryListingCache(int capacity) {
+        this.listings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized String[] list(Path dir) {
+        FileTime mtime;
+        try {
+            mtime = Files.getLastModifiedTime(dir);
+        } catch (IOException e) {
+            listings.remove(dir);
+            return EMPTY;
+        }
+        Listing listing = listings.get(dir);
+        if (listing != null && listing.mtime.equals(mtime)) {
+            return listing.names;
+        }
+
+        relists++;
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                names.add(entry.getFileName().toString());
+            }
+        } catch (IOException e) {
+            return EMPTY;
+        }
+        String[] sorted = names.toArray(EMPTY);
+        Arrays.sort(sorted);
+        listings.put(dir, new Listing(mtime, sorted));
+        return sorted;
+    }
+
+    // Names in the sorted listing that start with prefix; dotfiles only when asked for.
+    public List<String> matches(Path dir, String prefix) {
+        String[] names = list(dir);
+        List<String> matches = new ArrayList<>();
+        int index = Arrays.binarySearch(names, prefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        boolean showHidden = prefix.startsWith(".");
+        for (; index < names.length && names[index].startsWith(prefix); index++) {
+            if (showHidden || !names[index].startsWith(".")) {
+                matches.add(names[index]);
+            }
+        }
+        return matches;
+    }
+
+    synchronized long relistCount() {
+        return relists;
+    }
+
+    private record Listing(FileTime mtime, String[] names) {}
+}
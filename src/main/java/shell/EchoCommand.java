@@ -2,7 +2,6 @@ package shell;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 
 public class EchoCommand implements CommandRunner {
     private static EchoCommand instance;
@@ -19,12 +18,13 @@ public class EchoCommand implements CommandRunner {
 
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
-        PrintStream stdout = CommandRunner.toPrintStream(out);
-        if (cmd.getArgList() == null) {
-            stdout.println();
-            return;
+        try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+            if (cmd.getArgList() == null) {
+                stdout.println();
+                return;
+            }
+            stdout.println(String.join(" ", cmd.getArgList()));
         }
-        stdout.println(String.join(" ", cmd.getArgList()));
     }
 
 }
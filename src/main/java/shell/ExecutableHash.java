@@ -0,0 +1,162 @@
+package shell;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Command name -> path, like bash's hash; dropped when PATH or a PATH directory changes.
+public class ExecutableHash {
+    static final long DEFAULT_REVALIDATE_NANOS = 1_000_000_000L;
+    static final long DEFAULT_MISS_TTL_NANOS = 2_000_000_000L;
+    static final int DEFAULT_MAX_MISSES = 256;
+
+    private final long revalidateNanos;
+    private final long missTtlNanos;
+    private final int maxMisses;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // Name -> System.nanoTime() deadline after which the miss is searched again.
+    private final LinkedHashMap<String, Long> misses;
+    private String pathEnv;
+    private File[] dirs = new File[0];
+    private long[] dirMtimes = new long[0];
+    private long lastValidated;
+    private long generation;
+
+    public ExecutableHash() {
+        this(DEFAULT_REVALIDATE_NANOS, DEFAULT_MISS_TTL_NANOS, DEFAULT_MAX_MISSES);
+    }
+
+    ExecutableHash(long revalidateNanos) {
+        this(revalidateNanos, DEFAULT_MISS_TTL_NANOS, DEFAULT_MAX_MISSES);
+    }
+
+    ExecutableHash(long revalidateNanos, long missTtlNanos, int maxMisses) {
+        this.revalidateNanos = revalidateNanos;
+        this.missTtlNanos = missTtlNanos;
+        this.maxMisses = maxMisses;
+        this.misses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > ExecutableHash.this.maxMisses;
+            }
+        };
+    }
+
+    public synchronized String lookup(String pathEnv, String name) {
+        sync(pathEnv);
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.hits++;
+            return entry.path;
+        }
+
+        long now = System.nanoTime();
+        Long retryAt = misses.get(name);
+        if (retryAt != null) {
+            if (now - retryAt < 0) {
+                return null;
+            }
+            misses.remove(name);
+        }
+
+        String path = search(name);
+        if (path != null) {
+            entries.put(name, new Entry(path));
+        } else if (maxMisses > 0) {
+            misses.put(name, now + missTtlNanos);
+        }
+        return path;
+    }
+
+    // Bumped whenever hashed paths may have gone stale; lets callers drop their own derived caches.
+    public synchronized long generation(String pathEnv) {
+        sync(pathEnv);
+        return generation;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        misses.clear();
+        generation++;
+    }
+
+    synchronized int missCount() {
+        return misses.size();
+    }
+
+    public synchronized List<HashedCommand> list() {
+        List<HashedCommand> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            result.add(new HashedCommand(entry.getKey(), entry.getValue().path, entry.getValue().hits));
+        }
+        return result;
+    }
+
+    private void sync(String pathEnv) {
+        if (pathEnv == null) {
+            pathEnv = "";
+        }
+        if (!pathEnv.equals(this.pathEnv)) {
+            reset(pathEnv);
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastValidated < revalidateNanos) {
+            return;
+        }
+        lastValidated = now;
+        for (int i = 0; i < dirs.length; i++) {
+            long mtime = dirs[i].lastModified();
+            if (mtime != dirMtimes[i]) {
+                dirMtimes[i] = mtime;
+                entries.clear();
+                misses.clear();
+                generation++;
+            }
+        }
+    }
+
+    private void reset(String pathEnv) {
+        this.pathEnv = pathEnv;
+        entries.clear();
+        misses.clear();
+        generation++;
+        if (pathEnv.isBlank()) {
+            dirs = new File[0];
+        } else {
+            String[] parts = pathEnv.split(File.pathSeparator);
+            dirs = new File[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                dirs[i] = new File(parts[i].isEmpty() ? "." : parts[i]);
+            }
+        }
+        dirMtimes = new long[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            dirMtimes[i] = dirs[i].lastModified();
+        }
+        lastValidated = System.nanoTime();
+    }
+
+    private String search(String name) {
+        for (File dir : dirs) {
+            File candidate = new File(dir, name);
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    public record HashedCommand(String name, String path, long hits) {}
+
+    private static final class Entry {
+        private final String path;
+        private long hits = 1;
+
+        private Entry(String path) {
+            this.path = path;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package shell;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 
 public class ExitCommand implements CommandRunner {
     private static ExitCommand instance;
@@ -16,9 +17,23 @@ public class ExitCommand implements CommandRunner {
         return instance;
     }
 
+    // "exit [n]": without n the shell exits with the status of the last command, like bash.
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
-        HistoryCommand.writeOnExit(cmd.getContext());
-        System.exit(0);
+        ShellContext context = cmd.getContext();
+        List<String> args = cmd.getArgList();
+        int status = context != null ? context.getExitStatus() : 0;
+        if (args != null && !args.isEmpty()) {
+            try {
+                status = Integer.parseInt(args.get(0)) & 0xff;
+            } catch (NumberFormatException e) {
+                try (BuiltinOutput stderr = BuiltinOutput.of(err)) {
+                    stderr.println("exit: " + args.get(0) + ": numeric argument required");
+                }
+                status = 2;
+            }
+        }
+        HistoryCommand.writeOnExit(context);
+        System.exit(status);
     }
 }
@@ -1,13 +1,21 @@
 package shell;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 public class ExternalCommand implements CommandRunner {
     private static final ExternalCommand INSTANCE = new ExternalCommand();
+    // The JVM's own stdout/stderr as registered by Main. Only these may be handed to a child
+    // as-is; anything else (a capture, a pipe, a redirect file) still needs a pump.
+    private static volatile OutputStream processOut;
+    private static volatile OutputStream processErr;
+    // The descriptor a child gets in place of processOut: the JVM's own, or a file in tests.
+    private static volatile ProcessBuilder.Redirect processOutTarget = ProcessBuilder.Redirect.INHERIT;
 
     private ExternalCommand() {
     }
@@ -16,6 +24,35 @@ public class ExternalCommand implements CommandRunner {
         return INSTANCE;
     }
 
+    public static void useProcessStdio(OutputStream out, OutputStream err) {
+        processOut = out;
+        processErr = err;
+        processOutTarget = ProcessBuilder.Redirect.INHERIT;
+    }
+
+    static void useProcessStdout(OutputStream out, ProcessBuilder.Redirect target) {
+        processOut = out;
+        processOutTarget = target;
+    }
+
+    static boolean isProcessStdout(OutputStream out) {
+        return out != null && out == processOut;
+    }
+
+    // Returns target when stream is the process stream itself, after flushing what Java buffered.
+    private static ProcessBuilder.Redirect inheritIfProcess(OutputStream stream, OutputStream process,
+                                                           ProcessBuilder.Redirect target) {
+        if (stream == null || stream != process) {
+            return null;
+        }
+        try {
+            stream.flush();
+        } catch (IOException e) {
+            // Ignore flush failures.
+        }
+        return target;
+    }
+
     @Override
     public void run(Command cmd) {
         runWithStreams(cmd, System.in, System.out, System.err);
@@ -23,31 +60,74 @@ public class ExternalCommand implements CommandRunner {
 
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        runWithRedirects(cmd, in, out, err, null, null, null);
+    }
+
+    // A non-null inFile/outFile/errFile is handed to the child as its descriptor, so those bytes
+    // never pass through the JVM; in/out/err are only used for the descriptors left null.
+    // In-memory input (a here-string) is written inline rather than by a pump thread.
+    public void runWithRedirects(Command cmd,
+                                 InputStream in,
+                                 OutputStream out,
+                                 OutputStream err,
+                                 ProcessBuilder.Redirect inFile,
+                                 ProcessBuilder.Redirect outFile,
+                                 ProcessBuilder.Redirect errFile) {
         List<String> commandLine = cmd.toCommandLine();
+        if (outFile == null) {
+            outFile = inheritIfProcess(out, processOut, processOutTarget);
+        }
+        if (errFile == null) {
+            errFile = inheritIfProcess(err, processErr, ProcessBuilder.Redirect.INHERIT);
+        }
 
         Process process;
-        boolean inheritInput = in == System.in;
+        boolean inheritInput = inFile == null && in == System.in;
         try {
             ProcessBuilder builder = new ProcessBuilder(commandLine)
                     .directory(new File(cmd.getWorkspace()));
-            if (inheritInput) {
+            if (inFile != null) {
+                builder.redirectInput(inFile);
+            } else if (inheritInput) {
                 builder.redirectInput(ProcessBuilder.Redirect.INHERIT);
             }
+            if (outFile != null) {
+                builder.redirectOutput(outFile);
+            }
+            if (errFile != null) {
+                builder.redirectError(errFile);
+            }
             process = builder.start();
+            JobTable.track(process);
         } catch (IOException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
 
+        boolean feedInline = inFile == null && in instanceof ByteArrayInputStream;
         Thread stdinThread = null;
-        if (!inheritInput) {
-            stdinThread = pipe(in, process.getOutputStream(), true, null);
+        if (inFile == null && !inheritInput && !feedInline) {
+            stdinThread = pipe("stdin-pump", cmd, in, process.getOutputStream(), true, null);
+        }
+        Thread stdoutThread = null;
+        if (outFile == null) {
+            Runnable onStdoutFailure = out == System.out ? null : process::destroy;
+            stdoutThread = pipe("stdout-pump", cmd, process.getInputStream(), out, false, onStdoutFailure);
+        }
+        Thread stderrThread = null;
+        if (errFile == null) {
+            stderrThread = pipe("stderr-pump", cmd, process.getErrorStream(), err, false, null);
+        }
+        if (feedInline) {
+            // stdout/stderr are pumped or go to files, so a slow reader cannot deadlock this write.
+            try (OutputStream stdin = process.getOutputStream()) {
+                in.transferTo(stdin);
+            } catch (IOException e) {
+                // The child exited without reading all of its input.
+            }
         }
-        Runnable onStdoutFailure = out == System.out ? null : process::destroy;
-        Thread stdoutThread = pipe(process.getInputStream(), out, false, onStdoutFailure);
-        Thread stderrThread = pipe(process.getErrorStream(), err, false, null);
 
         try {
-            process.waitFor();
+            cmd.setExitStatus(process.waitFor());
             if (stdinThread != null) {
                 if (in != null && in != System.in) {
                     try {
@@ -58,20 +138,151 @@ public class ExternalCommand implements CommandRunner {
                 }
                 stdinThread.join();
             }
-            stdoutThread.join();
-            stderrThread.join();
+            if (stdoutThread != null) {
+                stdoutThread.join();
+            }
+            if (stderrThread != null) {
+                stderrThread.join();
+            }
         } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            // Killing the process ends the stdout/stderr pumps; the stdin pump may be parked on in.
             process.destroy();
+            if (stdinThread != null) {
+                stdinThread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs commands as one OS pipeline. The kernel connects neighbouring processes; only the
+    // segment's own stdin, stdout and stderr pass through Java.
+    public void runPipelineWithStreams(List<Command> commands,
+                                       InputStream in,
+                                       OutputStream out,
+                                       OutputStream err) {
+        runPipelineWithRedirects(commands, in, out, err, null, null);
+    }
+
+    // Like runPipelineWithStreams, with the first process reading inFile when it is non-null and
+    // files.get(i) holding process i's {stdout, stderr} files, as in runWithRedirects. Only the
+    // last process's stdout file is used; the others write into the pipe.
+    public void runPipelineWithRedirects(List<Command> commands,
+                                         InputStream in,
+                                         OutputStream out,
+                                         OutputStream err,
+                                         ProcessBuilder.Redirect inFile,
+                                         List<ProcessBuilder.Redirect[]> files) {
+        int lastIndex = commands.size() - 1;
+        if (commands.size() == 1) {
+            ProcessBuilder.Redirect[] own = files != null ? files.get(0) : new ProcessBuilder.Redirect[2];
+            runWithRedirects(commands.get(0), in, out, err, inFile, own[0], own[1]);
             return;
         }
+
+        boolean inheritInput = inFile == null && in == System.in;
+        List<ProcessBuilder> builders = new ArrayList<>(commands.size());
+        for (Command cmd : commands) {
+            builders.add(new ProcessBuilder(cmd.toCommandLine()).directory(new File(cmd.getWorkspace())));
+        }
+        if (inFile != null) {
+            builders.get(0).redirectInput(inFile);
+        } else if (inheritInput) {
+            builders.get(0).redirectInput(ProcessBuilder.Redirect.INHERIT);
+        }
+        ProcessBuilder.Redirect outFile = files != null ? files.get(lastIndex)[0] : null;
+        if (outFile == null) {
+            outFile = inheritIfProcess(out, processOut, processOutTarget);
+        }
+        if (outFile != null) {
+            builders.get(lastIndex).redirectOutput(outFile);
+        }
+        ProcessBuilder.Redirect errInherit = inheritIfProcess(err, processErr, ProcessBuilder.Redirect.INHERIT);
+        boolean[] pumpErr = new boolean[commands.size()];
+        for (int i = 0; i < builders.size(); i++) {
+            ProcessBuilder.Redirect errFile = files != null ? files.get(i)[1] : null;
+            if (errFile == null) {
+                errFile = errInherit;
+            }
+            if (errFile != null) {
+                builders.get(i).redirectError(errFile);
+            } else {
+                pumpErr[i] = true;
+            }
+        }
+
+        List<Process> processes;
+        try {
+            processes = ProcessBuilder.startPipeline(builders);
+            processes.forEach(JobTable::track);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        Process first = processes.get(0);
+        Process last = processes.get(processes.size() - 1);
+
+        Thread stdinThread = null;
+        if (inFile == null && !inheritInput) {
+            stdinThread = pipe("stdin-pump", commands.get(0), in, first.getOutputStream(), true, null);
+        }
+        Thread stdoutThread = null;
+        if (outFile == null) {
+            Runnable onStdoutFailure = out == System.out ? null : last::destroy;
+            stdoutThread = pipe("stdout-pump", commands.get(commands.size() - 1),
+                    last.getInputStream(), out, false, onStdoutFailure);
+        }
+        List<Thread> stderrThreads = new ArrayList<>(processes.size());
+        for (int i = 0; i < processes.size(); i++) {
+            if (pumpErr[i]) {
+                stderrThreads.add(pipe("stderr-pump", commands.get(i), processes.get(i).getErrorStream(), err, false, null));
+            }
+        }
+
+        try {
+            // Wait for the last stage, then tear down earlier stages (e.g., tail -f).
+            last.waitFor();
+            for (int i = 0; i < processes.size() - 1; i++) {
+                Process process = processes.get(i);
+                if (process.isAlive()) {
+                    process.destroy();
+                }
+            }
+            for (int i = 0; i < processes.size(); i++) {
+                commands.get(i).setExitStatus(processes.get(i).waitFor());
+            }
+            if (stdinThread != null) {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // Ignore close failures.
+                    }
+                }
+                stdinThread.join();
+            }
+            if (stdoutThread != null) {
+                stdoutThread.join();
+            }
+            for (Thread thread : stderrThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            if (stdinThread != null) {
+                stdinThread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private static Thread pipe(InputStream in,
+    private static Thread pipe(String role,
+                               Command cmd,
+                               InputStream in,
                                OutputStream out,
                                boolean closeOut,
                                Runnable onFailure) {
-        Thread thread = new Thread(() -> {
+        return ShellThreads.start(role, cmd, () -> {
             try {
                 if (in != null) {
                     in.transferTo(out);
@@ -102,8 +313,6 @@ public class ExternalCommand implements CommandRunner {
                 }
             }
         });
-        thread.start();
-        return thread;
     }
 
 }
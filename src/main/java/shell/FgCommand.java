@@ -0,0 +1,46 @@
+package shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public class FgCommand implements CommandRunner {
+    private static FgCommand instance;
+
+    private FgCommand() {
+    }
+
+    public static FgCommand getInstance() {
+        if (instance == null) {
+            instance = new FgCommand();
+        }
+        return instance;
+    }
+
+    // Waits for the job in the foreground. Jobs keep their empty stdin; there is no terminal hand-off.
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        ShellContext context = cmd.getContext();
+        List<String> args = cmd.getArgList();
+        String spec = args == null || args.isEmpty() ? null : args.get(0);
+        JobTable.Job job = context != null ? context.getJobs().find(spec) : null;
+        try (BuiltinOutput stdout = BuiltinOutput.of(out);
+             BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            if (job == null) {
+                stderr.println("fg: " + (spec == null ? "current" : spec) + ": no such job");
+                cmd.setExitStatus(1);
+                return;
+            }
+            stdout.println(job.commandLine());
+            stdout.flush();
+            try {
+                job.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            context.getJobs().remove(job);
+            cmd.setExitStatus(job.exitStatus());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public class HashCommand implements CommandRunner {
+    private static HashCommand instance;
+
+    private HashCommand() {
+    }
+
+    public static HashCommand getInstance() {
+        if (instance == null) {
+            instance = new HashCommand();
+        }
+        return instance;
+    }
+
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        try (BuiltinOutput stdout = BuiltinOutput.of(out);
+             BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            ExecutableHash hash = CommandResolver.getHash();
+            List<String> args = cmd.getArgList();
+
+            if (args == null || args.isEmpty()) {
+                List<ExecutableHash.HashedCommand> entries = hash.list();
+                if (entries.isEmpty()) {
+                    stdout.println("hash: hash table empty");
+                    return;
+                }
+                stdout.println("hits\tcommand");
+                for (ExecutableHash.HashedCommand entry : entries) {
+                    stdout.printPadded(entry.hits(), 4).print('\t').println(entry.path());
+                }
+                return;
+            }
+
+            for (String arg : args) {
+                if ("-r".equals(arg)) {
+                    hash.clear();
+                    continue;
+                }
+                if (CommandResolver.isBuiltin(arg)) {
+                    continue;
+                }
+                if (CommandResolver.findExecutable(cmd.getContext(), arg) == null) {
+                    stderr.println("hash: " + arg + ": not found");
+                    cmd.setExitStatus(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package shell;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+// HISTSIZE-bounded ring of history entries, numbered absolutely so "history" and "history -a"
+// stay stable; HISTFILE lines stay undecoded until read.
+public final class HistoryBuffer extends AbstractList<String> implements RandomAccess {
+    public static final int DEFAULT_CAPACITY = 500;
+    public static final int UNLIMITED = -1;
+    private static final int INITIAL_SLOTS = 16;
+
+    private String[] entries = new String[INITIAL_SLOTS];
+    // Serial number of each slot's entry, increasing from head; only kept while erasing duplicates.
+    private long[] serials;
+    private int head;
+    private int size;
+    // Oldest entries, straight from the history file; the live ones start at loadedStart.
+    private HistoryFile.Lines loaded;
+    private int loadedStart;
+    // Lines paged in before the loaded block so far, and how many are left (-1 until counted).
+    private long paged;
+    private long older = -1;
+    private int capacity;
+    private long dropped;
+    // Entry -> serial of its only occurrence; null unless erasing duplicates.
+    private Map<String, Long> index;
+    private long nextSerial;
+
+    public HistoryBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // A negative capacity means unlimited; zero keeps nothing.
+    public HistoryBuffer(int capacity) {
+        this.capacity = capacity < 0 ? UNLIMITED : capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Shrinking drops the oldest entries that no longer fit.
+    public void setCapacity(int capacity) {
+        this.capacity = capacity < 0 ? UNLIMITED : capacity;
+        if (this.capacity == UNLIMITED || size() <= this.capacity) {
+            return;
+        }
+        modCount++;
+        int excess = Math.min(size() - this.capacity, loadedSize());
+        loadedStart += excess;
+        dropped += excess;
+        releaseLoaded();
+        while (size > this.capacity) {
+            dropHead();
+        }
+    }
+
+    public boolean isEraseDuplicates() {
+        return index != null;
+    }
+
+    // Turning it on removes the duplicates already present, keeping each entry's newest copy.
+    public void setEraseDuplicates(boolean erase) {
+        if (erase == isEraseDuplicates()) {
+            return;
+        }
+        if (!erase) {
+            index = null;
+            serials = null;
+            return;
+        }
+        pageIn(Integer.MAX_VALUE);
+        modCount++;
+        String[] current = toArray(new String[0]);
+        long first = dropped;
+        clear();
+        dropped = first;
+        index = new HashMap<>();
+        serials = new long[entries.length];
+        for (String entry : current) {
+            add(entry);
+        }
+    }
+
+    // Appends lines read from the history file. An empty buffer adopts them as they are, so they
+    // are decoded only when listed or recalled, and the file lines before them can be paged in;
+    // the duplicate index needs every line decoded.
+    public void addLoaded(HistoryFile.Lines lines) {
+        if (size() > 0 || isEraseDuplicates()) {
+            lines = withOlder(lines);
+            for (int i = 0; i < lines.size(); i++) {
+                add(lines.get(i));
+            }
+            return;
+        }
+        modCount++;
+        loaded = lines;
+        loadedStart = 0;
+        older = -1;
+        setCapacity(capacity);
+        releaseLoaded();
+    }
+
+    // Absolute index of get(0): how many entries have been dropped from the front, less the ones
+    // paged in, so indexes of later entries never change.
+    public long firstIndex() {
+        return dropped;
+    }
+
+    // The number "history" shows for get(index), counting the file lines not paged in yet.
+    public long number(int index) {
+        return dropped + paged + older() + index + 1;
+    }
+
+    // File lines before get(0) that fit and can still be paged in; counted on first use.
+    public long older() {
+        if (!canPage()) {
+            return 0;
+        }
+        long room = room();
+        if (older < 0) {
+            try {
+                older = loaded.countBefore(room);
+            } catch (IOException e) {
+                older = 0;
+            }
+        }
+        return room < 0 ? older : Math.min(older, room);
+    }
+
+    // Moves up to count of the older file lines in front of get(0); returns how many it moved.
+    public int pageIn(int count) {
+        if (count <= 0 || !canPage()) {
+            return 0;
+        }
+        long room = room();
+        HistoryFile.Lines before;
+        try {
+            before = loaded.before((int) (room < 0 ? count : Math.min(count, room)));
+        } catch (IOException e) {
+            before = HistoryFile.Lines.EMPTY;
+        }
+        if (before.size() == 0) {
+            older = 0;
+            return 0;
+        }
+        modCount++;
+        loaded = before.append(loaded);
+        dropped -= before.size();
+        paged += before.size();
+        if (older >= 0) {
+            older = Math.max(0, older - before.size());
+        }
+        return before.size();
+    }
+
+    // Number of entries ever added; the absolute index the next entry will get.
+    public long total() {
+        return dropped + size();
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        int fromFile = loadedSize();
+        if (index < fromFile) {
+            return loaded.get(loadedStart + index);
+        }
+        return entries[(head + index - fromFile) % entries.length];
+    }
+
+    @Override
+    public int size() {
+        return loadedSize() + size;
+    }
+
+    @Override
+    public boolean add(String entry) {
+        modCount++;
+        if (index != null) {
+            erase(entry);
+        }
+        if (capacity == 0) {
+            dropped++;
+            return true;
+        }
+        if (size() == capacity) {
+            // Full: drop the oldest entry to make room, file lines first.
+            if (loadedSize() > 0) {
+                loadedStart++;
+                dropped++;
+                releaseLoaded();
+            } else {
+                dropHead();
+            }
+        }
+        if (size == entries.length) {
+            grow();
+        }
+        int slot = (head + size) % entries.length;
+        entries[slot] = entry;
+        if (index != null) {
+            serials[slot] = nextSerial;
+            index.put(entry, nextSerial++);
+        }
+        size++;
+        return true;
+    }
+
+    // Removes the earlier occurrence of entry when erasing duplicates. Returns the absolute index
+    // it had, so later entries move down one, or -1 when there was none.
+    public long erase(String entry) {
+        Long serial = index == null ? null : index.remove(entry);
+        if (serial == null) {
+            return -1;
+        }
+        modCount++;
+        int position = positionOf(serial);
+        removeAt(position);
+        return dropped + position;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        entries = new String[INITIAL_SLOTS];
+        head = 0;
+        size = 0;
+        loaded = null;
+        loadedStart = 0;
+        dropped = 0;
+        paged = 0;
+        older = -1;
+        if (index != null) {
+            index.clear();
+            serials = new long[entries.length];
+        }
+    }
+
+    // Only a loaded block nothing has been dropped from reaches back to its older file lines.
+    private boolean canPage() {
+        return loaded != null && loadedStart == 0 && capacity != 0;
+    }
+
+    // Free slots, or -1 when unlimited.
+    private long room() {
+        return capacity == UNLIMITED ? -1 : capacity - size();
+    }
+
+    // lines together with the file lines before them that fit.
+    private HistoryFile.Lines withOlder(HistoryFile.Lines lines) {
+        int room = capacity == UNLIMITED ? -1 : capacity - lines.size();
+        if (capacity != UNLIMITED && room <= 0 || lines.size() == 0) {
+            return lines;
+        }
+        try {
+            return lines.before(room).append(lines);
+        } catch (IOException e) {
+            return lines;
+        }
+    }
+
+    private int loadedSize() {
+        return loaded == null ? 0 : loaded.size() - loadedStart;
+    }
+
+    // Lets go of the file block once every line in it has been dropped.
+    private void releaseLoaded() {
+        if (loaded != null && loadedSize() == 0) {
+            loaded = null;
+            loadedStart = 0;
+        }
+    }
+
+    private void dropHead() {
+        if (index != null) {
+            index.remove(entries[head], serials[head]);
+        }
+        entries[head] = null;
+        head = (head + 1) % entries.length;
+        size--;
+        dropped++;
+    }
+
+    // Ring position of the entry with this serial; serials increase from head, so binary search.
+    private int positionOf(long serial) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (serials[(head + mid) % entries.length] < serial) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Closes the gap left at ring position i by shifting whichever side of it is shorter: O(n).
+    private void removeAt(int i) {
+        int length = entries.length;
+        if (i < size / 2) {
+            for (int j = i; j > 0; j--) {
+                int to = (head + j) % length;
+                int from = (head + j - 1) % length;
+                entries[to] = entries[from];
+                serials[to] = serials[from];
+            }
+            entries[head] = null;
+            head = (head + 1) % length;
+        } else {
+            for (int j = i; j < size - 1; j++) {
+                int to = (head + j) % length;
+                int from = (head + j + 1) % length;
+                entries[to] = entries[from];
+                serials[to] = serials[from];
+            }
+            entries[(head + size - 1) % length] = null;
+        }
+        size--;
+    }
+
+    private void grow() {
+        long doubled = Math.max((long) entries.length * 2, INITIAL_SLOTS);
+        int length = (int) Math.min(doubled, capacity == UNLIMITED ? Integer.MAX_VALUE - 8 : capacity);
+        String[] grown = new String[length];
+        int tail = Math.min(size, entries.length - head);
+        System.arraycopy(entries, head, grown, 0, tail);
+        System.arraycopy(entries, 0, grown, tail, size - tail);
+        if (serials != null) {
+            long[] grownSerials = new long[length];
+            System.arraycopy(serials, head, grownSerials, 0, tail);
+            System.arraycopy(serials, 0, grownSerials, tail, size - tail);
+            serials = grownSerials;
+        }
+        entries = grown;
+        head = 0;
+    }
+}
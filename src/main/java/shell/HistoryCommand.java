@@ -2,14 +2,8 @@ package shell;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.BufferedWriter;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.List;
-import java.util.stream.Stream;
 
 public class HistoryCommand implements CommandRunner {
     private static HistoryCommand instance;
@@ -24,30 +18,105 @@ public class HistoryCommand implements CommandRunner {
         return instance;
     }
 
+    // HISTCONTROL (colon-separated, as in bash): ignorespace skips lines starting with a space,
+    // ignoredups skips a repeat of the previous entry, ignoreboth means both, and erasedups
+    // removes every earlier copy of the line.
     public static void record(ShellContext context, String line) {
-        if (context == null || line == null || line.isBlank()) {
+        if (context == null || line == null || line.isBlank() || !context.isHistoryEnabled()) {
             return;
         }
-        context.getHistory().add(line);
+        String control = context.getEnv("HISTCONTROL");
+        if (line.startsWith(" ") && (hasControl(control, "ignorespace") || hasControl(control, "ignoreboth"))) {
+            return;
+        }
+        String entry = line.trim();
+        HistoryBuffer history = context.getHistory();
+        if ((hasControl(control, "ignoredups") || hasControl(control, "ignoreboth"))
+                && !history.isEmpty() && history.get(history.size() - 1).equals(entry)) {
+            return;
+        }
+        history.setEraseDuplicates(hasControl(control, "erasedups"));
+        addEntry(context, entry);
+        // Entries the writer refuses (e.g. after its queue was full) wait for "history -a" or exit.
+        HistoryWriter writer = context.getHistoryWriter();
+        if (writer != null) {
+            writer.offer(history.total() - 1, entry);
+        }
     }
 
+    private static boolean hasControl(String control, String value) {
+        if (control == null || control.isBlank()) {
+            return false;
+        }
+        for (String part : control.split(":")) {
+            if (part.trim().equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds entry, first erasing its earlier copy under erasedups. An erased entry that was
+    // already appended moves the append bookmarks down with the entries after it.
+    private static void addEntry(ShellContext context, String entry) {
+        HistoryBuffer history = context.getHistory();
+        long erased = history.erase(entry);
+        if (erased >= 0 && erased < context.getLastAppendIndex()) {
+            context.setLastAppendIndex(context.getLastAppendIndex() - 1);
+        }
+        HistoryWriter writer = context.getHistoryWriter();
+        if (erased >= 0 && writer != null && erased < writer.mark()) {
+            writer.setMark(writer.mark() - 1);
+        }
+        history.add(entry);
+    }
+
+    // HISTSIZE bounds the in-memory history (default 500, negative for unlimited). HISTFILE is
+    // trimmed only when HISTFILESIZE is set, so an existing file is never cut to a default.
     public static void initializeFromEnv(ShellContext context) {
         if (context == null) {
             return;
         }
+        int historySize = parseSize(context.getEnv("HISTSIZE"), HistoryBuffer.DEFAULT_CAPACITY);
+        context.getHistory().setCapacity(historySize);
+        context.getHistory().setEraseDuplicates(hasControl(context.getEnv("HISTCONTROL"), "erasedups"));
+        context.setHistoryFileSize(parseSize(context.getEnv("HISTFILESIZE"), -1));
+
         String histFile = context.getEnv("HISTFILE");
         if (histFile == null || histFile.isBlank()) {
             return;
         }
         context.setHistoryFilePath(histFile);
         readFromFile(context, histFile);
-        context.setLastAppendIndex(context.getHistory().size());
+        context.setLastAppendIndex(context.getHistory().total());
+        trimFile(context, histFile);
+        try {
+            context.setHistoryTail(HistoryTail.atEnd(Path.of(histFile)));
+        } catch (Exception e) {
+            // Without a tail, "history -n" reads the whole file.
+        }
+        HistoryWriter writer = HistoryWriter.start(Path.of(histFile), context.getHistoryTail());
+        writer.setMark(context.getHistory().total());
+        context.setHistoryWriter(writer);
+    }
+
+    private static int parseSize(String value, int fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
     }
 
     static void clearHistory(ShellContext context) {
         if (context == null) {
             return;
         }
+        closeWriter(context);
+        closeTail(context);
         context.getHistory().clear();
         context.setHistoryFilePath(null);
         context.setLastAppendIndex(0);
@@ -58,20 +127,48 @@ public class HistoryCommand implements CommandRunner {
             return;
         }
         String path = context.getHistoryFilePath();
-        if (path == null || path.isBlank()) {
+        if (path != null && !path.isBlank()) {
+            syncWriter(context);
+            appendToFile(context, path);
+            trimFile(context, path);
+        }
+        closeWriter(context);
+        closeTail(context);
+    }
+
+    private static void closeWriter(ShellContext context) {
+        HistoryWriter writer = context.getHistoryWriter();
+        if (writer == null) {
             return;
         }
-        appendToFile(context, path);
+        context.setHistoryWriter(null);
+        try {
+            writer.close();
+        } catch (Exception e) {
+            // Ignore history file write failures.
+        }
+    }
+
+    // Waits for the background writer, so the file holds every entry recorded so far.
+    private static void syncWriter(ShellContext context) {
+        HistoryWriter writer = context.getHistoryWriter();
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.sync();
+        } catch (Exception e) {
+            // Ignore history file write failures.
+        }
     }
 
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
-        PrintStream stdout = CommandRunner.toPrintStream(out);
         ShellContext context = cmd.getContext();
         if (context == null) {
             return;
         }
-        List<String> history = context.getHistory();
+        HistoryBuffer history = context.getHistory();
         List<String> args = cmd.getArgList();
         if (args != null && !args.isEmpty()) {
             String option = args.get(0);
@@ -79,8 +176,14 @@ public class HistoryCommand implements CommandRunner {
                 if (args.size() >= 2) {
                     String path = args.get(1);
                     context.setHistoryFilePath(path);
+                    syncWriter(context);
                     writeToFile(context, path);
-                    context.setLastAppendIndex(history.size());
+                    context.setLastAppendIndex(history.total());
+                    HistoryWriter writer = writerFor(context, path);
+                    if (writer != null) {
+                        writer.setMark(history.total());
+                    }
+                    trimFile(context, path);
                 }
                 return;
             }
@@ -92,34 +195,48 @@ public class HistoryCommand implements CommandRunner {
                 }
                 return;
             }
+            if ("-n".equals(option)) {
+                String path = args.size() >= 2 ? args.get(1) : context.getHistoryFilePath();
+                if (path != null && !path.isBlank()) {
+                    mergeFromFile(context, path);
+                }
+                return;
+            }
             if ("-a".equals(option)) {
                 if (args.size() >= 2) {
                     String path = args.get(1);
                     context.setHistoryFilePath(path);
+                    syncWriter(context);
                     appendToFile(context, path);
+                    trimFile(context, path);
                 }
                 return;
             }
         }
 
-        int limit = history.size();
+        int limit = Integer.MAX_VALUE;
         if (args != null && !args.isEmpty()) {
             try {
-                int value = Integer.parseInt(args.get(0));
-                if (value >= 0) {
-                    limit = Math.min(limit, value);
-                } else {
-                    limit = 0;
-                }
+                limit = Math.max(0, Integer.parseInt(args.get(0)));
             } catch (NumberFormatException e) {
                 limit = 0;
             }
         }
+        // Older HISTFILE lines are read only once a listing reaches back to them.
+        if (limit > history.size()) {
+            history.pageIn(limit - history.size());
+        }
 
         int start = Math.max(0, history.size() - limit);
-        for (int i = start; i < history.size(); i++) {
-            String entry = history.get(i);
-            stdout.printf("%5d  %s%n", i + 1, entry);
+        long number = history.number(start);
+        try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+            for (int i = start; i < history.size(); i++) {
+                stdout.printPadded(number++, 5).print("  ").println(history.get(i));
+                if (stdout.checkError()) {
+                    // The reader went away (e.g. history | head -1); stop formatting entries.
+                    break;
+                }
+            }
         }
     }
 
@@ -128,60 +245,145 @@ public class HistoryCommand implements CommandRunner {
             return;
         }
         try {
-            Path file = Path.of(path);
-            if (!Files.exists(file)) {
+            // Only the last HISTSIZE lines can survive, so only those are read, and an empty
+            // history starts with the newest page of them.
+            HistoryBuffer history = context.getHistory();
+            int capacity = history.capacity();
+            int limit = history.isEmpty() && !history.isEraseDuplicates() && capacity != 0
+                    ? (capacity < 0 ? HistoryFile.PAGE_LINES : Math.min(capacity, HistoryFile.PAGE_LINES))
+                    : capacity;
+            HistoryFile.Lines lines = HistoryFile.readTail(Path.of(path), limit);
+            if (!history.isEraseDuplicates()) {
+                history.addLoaded(lines);
                 return;
             }
-            try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
-                lines.filter(line -> line != null && !line.isBlank())
-                        .forEach(context.getHistory()::add);
+            for (int i = 0; i < lines.size(); i++) {
+                addEntry(context, lines.get(i));
             }
         } catch (Exception e) {
             // Ignore history file read failures.
         }
     }
 
+    // Adds the lines other sessions appended since the last merge. Only HISTFILE keeps a read
+    // offset; any other file is read in full, like -r.
+    private static void mergeFromFile(ShellContext context, String path) {
+        HistoryBuffer history = context.getHistory();
+        HistoryTail tail = context.getHistoryTail();
+        Path file = Path.of(path);
+        boolean temporary = tail == null || !tail.file().equals(file);
+        if (temporary) {
+            tail = HistoryTail.atStart(file);
+        }
+        try {
+            HistoryWriter writer = writerFor(context, path);
+            boolean appended = context.getLastAppendIndex() == history.total();
+            boolean written = writer != null && writer.mark() == history.total();
+            for (String line : tail.readNew()) {
+                addEntry(context, line);
+            }
+            // The merged lines are already in the file; don't append them again.
+            if (appended) {
+                context.setLastAppendIndex(history.total());
+            }
+            if (written) {
+                writer.setMark(history.total());
+            }
+        } catch (Exception e) {
+            // Ignore history file read failures.
+        } finally {
+            if (temporary) {
+                closeQuietly(tail);
+            }
+        }
+    }
+
+    private static void closeTail(ShellContext context) {
+        closeQuietly(context.getHistoryTail());
+        context.setHistoryTail(null);
+    }
+
+    private static void closeQuietly(HistoryTail tail) {
+        if (tail == null) {
+            return;
+        }
+        try {
+            tail.close();
+        } catch (Exception e) {
+            // Only a read channel; nothing is lost.
+        }
+    }
+
     private static void appendToFile(ShellContext context, String path) {
         if (context == null || path == null || path.isBlank()) {
             return;
         }
-        List<String> history = context.getHistory();
-        int start = Math.min(Math.max(context.getLastAppendIndex(), 0), history.size());
-        if (start >= history.size()) {
-            return;
+        HistoryBuffer history = context.getHistory();
+        // The background writer has already put its entries into its own file.
+        HistoryWriter writer = writerFor(context, path);
+        long from = context.getLastAppendIndex();
+        if (writer != null) {
+            from = Math.max(from, writer.mark());
         }
+        // Entries that wrapped out of the buffer before being appended are gone, as in bash.
+        long first = history.firstIndex();
+        int start = (int) (Math.min(Math.max(from, first), history.total()) - first);
         try {
-            Path file = Path.of(path);
-            try (BufferedWriter writer = Files.newBufferedWriter(file,
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND)) {
+            if (start < history.size()) {
+                StringBuilder text = new StringBuilder();
                 for (int i = start; i < history.size(); i++) {
-                    writer.write(history.get(i));
-                    writer.newLine();
+                    text.append(history.get(i)).append(System.lineSeparator());
                 }
+                try (HistoryFile.Appender appender = new HistoryFile.Appender(Path.of(path), context.getHistoryTail())) {
+                    appender.append(text);
+                }
+            }
+            context.setLastAppendIndex(history.total());
+            if (writer != null) {
+                writer.setMark(history.total());
             }
-            context.setLastAppendIndex(history.size());
         } catch (Exception e) {
             // Ignore history file append failures.
         }
     }
 
+    // The background writer when it writes to path, else null.
+    private static HistoryWriter writerFor(ShellContext context, String path) {
+        HistoryWriter writer = context.getHistoryWriter();
+        if (writer == null) {
+            return null;
+        }
+        Path file = Path.of(path).toAbsolutePath().normalize();
+        return writer.file().toAbsolutePath().normalize().equals(file) ? writer : null;
+    }
+
+    private static void trimFile(ShellContext context, String path) {
+        try {
+            Path file = Path.of(path);
+            HistoryWriter writer = writerFor(context, path);
+            // Behind the writer's pending entries, so none of them lands in the old file.
+            if (writer != null) {
+                writer.compact(context.getHistoryFileSize());
+                return;
+            }
+            HistoryFile.compact(file, context.getHistoryFileSize());
+        } catch (Exception e) {
+            // Ignore history file compaction failures; the file is left as it was.
+        }
+    }
+
     private static void writeToFile(ShellContext context, String path) {
         if (context == null || path == null || path.isBlank()) {
             return;
         }
         try {
-            Path file = Path.of(path);
-            try (BufferedWriter writer = Files.newBufferedWriter(file,
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING)) {
-                for (String entry : context.getHistory()) {
-                    writer.write(entry);
-                    writer.newLine();
-                }
+            HistoryBuffer history = context.getHistory();
+            history.pageIn(Integer.MAX_VALUE);
+            StringBuilder text = new StringBuilder();
+            for (String entry : history) {
+                text.append(entry).append(System.lineSeparator());
             }
+            HistoryFile.overwrite(Path.of(path), text);
         } catch (Exception e) {
             // Ignore history file write failures.
         }
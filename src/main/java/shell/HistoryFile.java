@@ -0,0 +1,361 @@
+package shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+
+// HISTFILE reads, appends and compaction; every write holds an exclusive FileLock.
+public final class HistoryFile {
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // FileLock is held per process: a second lock from this JVM throws instead of waiting, so
+    // writers here also serialize on this monitor. HistoryTail takes it too.
+    static final Object LOCK = new Object();
+
+    private HistoryFile() {
+    }
+
+    // Lines loaded up front when HISTSIZE allows more; the rest are paged in when listed.
+    static final int PAGE_LINES = 1000;
+
+    // The last maxLines non-blank lines of file (all of them when maxLines is negative). Only the
+    // pages holding those lines are touched; their bytes are copied out of the mapping, so later
+    // truncation of the file cannot fault, and each line is decoded on first access.
+    public static Lines readTail(Path file, int maxLines) throws IOException {
+        if (maxLines == 0 || !Files.isRegularFile(file)) {
+            return Lines.EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readBefore(file, fileKey(file), channel, channel.size(), maxLines);
+        }
+    }
+
+    // The last maxLines non-blank lines that end at or before byte end.
+    private static Lines readBefore(Path file, Object key, FileChannel channel, long end, int maxLines)
+            throws IOException {
+        // A mapping is limited to 2 GiB; lines before the final 2 GiB are ignored.
+        int window = (int) Math.min(end, Integer.MAX_VALUE - 8);
+        if (window == 0 || maxLines == 0) {
+            return Lines.EMPTY;
+        }
+        long base = end - window;
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, base, window);
+
+        // Newest line first while scanning; reversed below.
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int count = 0;
+        int lineEnd = window;
+        boolean content = false;
+        for (int i = window - 1; i >= -1; i--) {
+            byte b = i >= 0 ? map.get(i) : (byte) '\n';
+            if (b != '\n') {
+                content |= !isBlank(b);
+                continue;
+            }
+            if (content) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                starts[count] = i + 1;
+                ends[count] = map.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                count++;
+                if (count == maxLines) {
+                    break;
+                }
+            }
+            lineEnd = i;
+            content = false;
+        }
+        if (count == 0) {
+            return Lines.EMPTY;
+        }
+
+        int first = starts[count - 1];
+        byte[] data = new byte[ends[0] - first];
+        map.get(first, data);
+        int[] lineStarts = new int[count];
+        int[] lineEnds = new int[count];
+        for (int i = 0; i < count; i++) {
+            lineStarts[i] = starts[count - 1 - i] - first;
+            lineEnds[i] = ends[count - 1 - i] - first;
+        }
+        return new Lines(file, key, base + first, data, lineStarts, lineEnds);
+    }
+
+    // Non-blank lines that end at or before byte end, counting at most limit (all when negative).
+    private static long countBefore(FileChannel channel, long end, long limit) throws IOException {
+        int window = (int) Math.min(end, Integer.MAX_VALUE - 8);
+        if (window == 0 || limit == 0) {
+            return 0;
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, end - window, window);
+        long count = 0;
+        boolean content = false;
+        for (int i = window - 1; i >= -1; i--) {
+            byte b = i >= 0 ? map.get(i) : (byte) '\n';
+            if (b != '\n') {
+                content |= !isBlank(b);
+            } else if (content) {
+                if (++count == limit) {
+                    break;
+                }
+                content = false;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+
+    // History file lines as UTF-8 bytes, decoded on first access. They keep their file offset so
+    // the lines before them can be paged in later.
+    public static final class Lines {
+        static final Lines EMPTY = new Lines(null, null, 0, new byte[0], new int[0], new int[0]);
+
+        private final Path file;
+        private final Object key;
+        // File offset of data[0].
+        private final long position;
+        private final byte[] data;
+        private final int[] starts;
+        private final int[] ends;
+        private final String[] decoded;
+
+        private Lines(Path file, Object key, long position, byte[] data, int[] starts, int[] ends) {
+            this.file = file;
+            this.key = key;
+            this.position = position;
+            this.data = data;
+            this.starts = starts;
+            this.ends = ends;
+            this.decoded = new String[starts.length];
+        }
+
+        public int size() {
+            return starts.length;
+        }
+
+        public String get(int index) {
+            String line = decoded[index];
+            if (line == null) {
+                line = new String(data, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+                decoded[index] = line;
+            }
+            return line;
+        }
+
+        // Up to maxLines of the lines before these in the file (all when negative); none once the
+        // file has been replaced or rewritten.
+        public Lines before(int maxLines) throws IOException {
+            try (FileChannel channel = openUnchanged()) {
+                return channel == null ? EMPTY : readBefore(file, key, channel, position, maxLines);
+            }
+        }
+
+        // How many lines there are before these in the file, counting at most limit (all when
+        // negative).
+        public long countBefore(long limit) throws IOException {
+            try (FileChannel channel = openUnchanged()) {
+                return channel == null ? 0 : HistoryFile.countBefore(channel, position, limit);
+            }
+        }
+
+        // These lines followed by later, whose file position is kept.
+        Lines append(Lines later) {
+            if (size() == 0) {
+                return later;
+            }
+            int count = size() + later.size();
+            byte[] joined = Arrays.copyOf(data, data.length + later.data.length);
+            System.arraycopy(later.data, 0, joined, data.length, later.data.length);
+            int[] joinedStarts = Arrays.copyOf(starts, count);
+            int[] joinedEnds = Arrays.copyOf(ends, count);
+            for (int i = 0; i < later.size(); i++) {
+                joinedStarts[size() + i] = later.starts[i] + data.length;
+                joinedEnds[size() + i] = later.ends[i] + data.length;
+            }
+            Lines lines = new Lines(file, key, position, joined, joinedStarts, joinedEnds);
+            System.arraycopy(decoded, 0, lines.decoded, 0, size());
+            System.arraycopy(later.decoded, 0, lines.decoded, size(), later.size());
+            return lines;
+        }
+
+        // The file these came from, or null when it is gone or no longer starts them at position.
+        private FileChannel openUnchanged() throws IOException {
+            if (file == null || position == 0 || !Objects.equals(key, fileKey(file))) {
+                return null;
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer first = ByteBuffer.allocate(ends[0]);
+            while (first.hasRemaining() && channel.read(first, position + first.position()) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+            if (!Arrays.equals(first.array(), 0, first.position(), data, 0, ends[0])) {
+                channel.close();
+                return null;
+            }
+            return channel;
+        }
+    }
+
+    // Replaces the contents of file with text, under the file lock.
+    @SuppressWarnings("try")
+    public static void overwrite(Path file, CharSequence text) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+        synchronized (LOCK) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                channel.truncate(0);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+    }
+
+    // Trims file to its last maxLines lines; returns false when it already fits. The lock on the
+    // old file is held until the trimmed copy has replaced it, so no append lands in between.
+    @SuppressWarnings("try")
+    public static boolean compact(Path file, long maxLines) throws IOException {
+        if (maxLines < 0 || !Files.isRegularFile(file)) {
+            return false;
+        }
+        synchronized (LOCK) {
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock lock = source.lock()) {
+                long offset = tailOffset(source, maxLines);
+                if (offset == 0) {
+                    return false;
+                }
+                Path dir = file.toAbsolutePath().getParent();
+                Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+                try {
+                    try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        long size = source.size();
+                        long position = offset;
+                        while (position < size) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                        target.force(true);
+                    }
+                    try {
+                        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                return true;
+            }
+        }
+    }
+
+    // Identity of the file currently at path (inode on Unix), or null when there is none; tells
+    // an open channel whether the file was replaced since.
+    static Object fileKey(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // Append handle that reopens the file when it was replaced; writes are reported to tail.
+    public static final class Appender implements Closeable {
+        private final Path file;
+        private final HistoryTail tail;
+        private FileChannel channel;
+        private Object key;
+
+        public Appender(Path file, HistoryTail tail) {
+            this.file = file;
+            this.tail = tail != null && tail.file().equals(file) ? tail : null;
+        }
+
+        @SuppressWarnings("try")
+        public void append(CharSequence text) throws IOException {
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+            synchronized (LOCK) {
+                while (true) {
+                    if (channel == null) {
+                        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+                        key = fileKey(file);
+                    }
+                    boolean replaced;
+                    try (FileLock lock = channel.lock()) {
+                        replaced = !Objects.equals(key, fileKey(file));
+                        if (!replaced) {
+                            long start = channel.size();
+                            while (bytes.hasRemaining()) {
+                                channel.write(bytes);
+                            }
+                            if (tail != null) {
+                                tail.skip(start, channel.size());
+                            }
+                            return;
+                        }
+                    }
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    // Byte offset where the last `lines` lines start, scanning backwards from the end in blocks;
+    // 0 when the file has no more than that many lines.
+    static long tailOffset(FileChannel channel, long lines) throws IOException {
+        long size = channel.size();
+        if (lines == 0 || size == 0) {
+            return size;
+        }
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        long newlines = 0;
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - BLOCK_SIZE);
+            block.clear().limit((int) (end - start));
+            long position = start;
+            while (block.hasRemaining() && channel.read(block, position) >= 0) {
+                position = start + block.position();
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                // The final byte is at most the last line's terminator, never a line boundary.
+                if (block.get(i) == '\n' && start + i != size - 1 && ++newlines == lines) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,223 @@
+package shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Reads what other sessions appended to a shared HISTFILE since the last "history -n".
+public final class HistoryTail implements Closeable {
+    // Lines kept from the end of what was read, to find the same place in a replaced file.
+    private static final int ANCHOR_LINES = 8;
+    // One read is limited to 2 GiB; anything before the final 2 GiB is ignored.
+    private static final int MAX_READ = Integer.MAX_VALUE - 8;
+
+    private final Path file;
+    private FileChannel channel;
+    private Object key;
+    private long offset;
+    // The last lines before offset, raw and without their newline.
+    private final ArrayDeque<byte[]> anchor = new ArrayDeque<>();
+    // This session's own appends, as [start, end) offsets in file order.
+    private final ArrayDeque<long[]> ownWrites = new ArrayDeque<>();
+    // Lines from a replaced file that readNew has not returned yet.
+    private final List<String> pending = new ArrayList<>();
+
+    private HistoryTail(Path file) {
+        this.file = file;
+    }
+
+    // Everything already in the file counts as read.
+    public static HistoryTail atEnd(Path file) throws IOException {
+        HistoryTail tail = new HistoryTail(file);
+        synchronized (HistoryFile.LOCK) {
+            Object current = HistoryFile.fileKey(file);
+            if (current != null) {
+                tail.open(current);
+                long from = HistoryFile.tailOffset(tail.channel, ANCHOR_LINES);
+                tail.parse(tail.read(from, tail.channel.size()), from, false);
+            }
+        }
+        return tail;
+    }
+
+    public static HistoryTail atStart(Path file) {
+        return new HistoryTail(file);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    // Called by the appender, under the file lock, for each range it wrote.
+    void skip(long start, long end) throws IOException {
+        synchronized (HistoryFile.LOCK) {
+            // The appender has moved on to a replacement file; finish the old one first, so its
+            // offsets are never mixed with these.
+            Object current = HistoryFile.fileKey(file);
+            if (channel != null && current != null && !current.equals(key)) {
+                replace(current);
+            }
+            long[] last = ownWrites.peekLast();
+            if (last != null && last[1] == start) {
+                last[1] = end;
+            } else {
+                ownWrites.addLast(new long[] {start, end});
+            }
+        }
+    }
+
+    // Non-blank lines other sessions appended since the last call, oldest first.
+    public List<String> readNew() throws IOException {
+        synchronized (HistoryFile.LOCK) {
+            Object current = HistoryFile.fileKey(file);
+            if (current != null) {
+                if (channel == null) {
+                    // A tail that started before the file existed adopts the first file it sees.
+                    open(current);
+                } else if (!current.equals(key)) {
+                    replace(current);
+                } else if (channel.size() < offset || !endsWithAnchor()) {
+                    // Rewritten in place, so the old offsets mean nothing.
+                    ownWrites.clear();
+                    relocate();
+                }
+                long size = channel.size();
+                long from = Math.max(offset, size - MAX_READ);
+                pending.addAll(parse(read(from, size), from, true));
+            }
+            List<String> lines = new ArrayList<>(pending);
+            pending.clear();
+            return lines;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (HistoryFile.LOCK) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private void open(Object current) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        key = current;
+    }
+
+    // Nothing is written to a file once it has been replaced, so what is left of it is final.
+    private void replace(Object current) throws IOException {
+        long size = channel.size();
+        if (size > offset) {
+            long from = Math.max(offset, size - MAX_READ);
+            pending.addAll(parse(read(from, size), from, true));
+        }
+        close();
+        open(current);
+        ownWrites.clear();
+        relocate();
+    }
+
+    // Places offset just after the last run of lines matching the anchor. With no match the whole
+    // file is new to this session, as after a compaction that kept only unread lines.
+    private void relocate() throws IOException {
+        long size = channel.size();
+        long from = Math.max(0, size - MAX_READ);
+        byte[] data = read(from, size);
+        byte[][] seen = anchor.toArray(new byte[0][]);
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        int lineStart = 0;
+        int resume = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            starts.add(lineStart);
+            ends.add(i);
+            lineStart = i + 1;
+            int count = starts.size();
+            int match = Math.min(seen.length, count);
+            boolean matched = match > 0;
+            for (int k = 1; matched && k <= match; k++) {
+                byte[] line = seen[seen.length - k];
+                matched = Arrays.equals(data, starts.get(count - k), ends.get(count - k), line, 0, line.length);
+            }
+            if (matched) {
+                resume = lineStart;
+            }
+        }
+        offset = from + resume;
+    }
+
+    // Whether the bytes just before offset are still the last line read, newline included.
+    private boolean endsWithAnchor() throws IOException {
+        byte[] last = anchor.peekLast();
+        if (last == null) {
+            return true;
+        }
+        if (offset < last.length + 1) {
+            return false;
+        }
+        byte[] data = read(offset - last.length - 1, offset);
+        return data[last.length] == '\n' && Arrays.equals(data, 0, last.length, last, 0, last.length);
+    }
+
+    private byte[] read(long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full.
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    // Consumes the complete lines in data, which starts at file position from; returns the ones
+    // to merge when collect is set.
+    private List<String> parse(byte[] data, long from, boolean collect) {
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (anchor.size() == ANCHOR_LINES) {
+                anchor.removeFirst();
+            }
+            anchor.addLast(Arrays.copyOfRange(data, lineStart, i));
+            if (collect && !isOwn(from + lineStart)) {
+                int end = i > lineStart && data[i - 1] == '\r' ? i - 1 : i;
+                String line = new String(data, lineStart, end - lineStart, StandardCharsets.UTF_8);
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+            lineStart = i + 1;
+        }
+        offset = from + lineStart;
+        while (!ownWrites.isEmpty() && ownWrites.peekFirst()[1] <= offset) {
+            ownWrites.removeFirst();
+        }
+        return lines;
+    }
+
+    // Positions only grow during a parse, so ranges left behind can be dropped as we go.
+    private boolean isOwn(long position) {
+        while (!ownWrites.isEmpty() && ownWrites.peekFirst()[1] <= position) {
+            ownWrites.removeFirst();
+        }
+        long[] first = ownWrites.peekFirst();
+        return first != null && first[0] <= position;
+    }
+}
@@ -0,0 +1,162 @@
+package shell;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+// Appends HISTFILE entries from a background thread, one locked write per batch.
+public final class HistoryWriter implements AutoCloseable {
+    static final int QUEUE_CAPACITY = 1024;
+    static final long FLUSH_INTERVAL_MILLIS = 200;
+    static final int FLUSH_CHARS = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Path file;
+    // Entries (String) and barriers (FutureTask), in submission order.
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final StringBuilder batch = new StringBuilder();
+    private final HistoryFile.Appender appender;
+    private boolean stopped;
+    // Absolute history index of the next entry this writer takes; earlier ones are in the file or
+    // queued. Kept apart from the "history -a" bookmark, which may point at another file.
+    private long mark;
+    private volatile boolean closed;
+
+    private HistoryWriter(Path file, HistoryTail tail) {
+        this.file = file;
+        this.appender = new HistoryFile.Appender(file, tail);
+    }
+
+    // The file is created by the first write, not here. Writes are reported to tail, if given.
+    public static HistoryWriter start(Path file, HistoryTail tail) {
+        HistoryWriter writer = new HistoryWriter(file, tail);
+        ShellThreads.start("history-writer", null, writer::run);
+        return writer;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    // False when the queue is full or the writer is closed; the entry is then left for
+    // "history -a" or the exit-time append to pick up.
+    public boolean offer(String entry) {
+        return !closed && queue.offer(entry);
+    }
+
+    // Like offer(entry), but only for the entry at mark, so entries are never written out of order.
+    public boolean offer(long index, String entry) {
+        if (index != mark || !offer(entry)) {
+            return false;
+        }
+        mark = index + 1;
+        return true;
+    }
+
+    public long mark() {
+        return mark;
+    }
+
+    public void setMark(long mark) {
+        this.mark = mark;
+    }
+
+    // Returns once everything offered so far has been written.
+    public void sync() throws IOException {
+        submit(() -> null);
+    }
+
+    // Trims the file to its last maxLines lines; the next batch reopens the replaced file.
+    public void compact(long maxLines) throws IOException {
+        submit(() -> {
+            HistoryFile.compact(file, maxLines);
+            return null;
+        });
+    }
+
+    // Writes what is pending and stops the thread; later offers are refused.
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        submit(() -> {
+            closeChannel();
+            stopped = true;
+            return null;
+        });
+    }
+
+    private void submit(Callable<Void> action) throws IOException {
+        FutureTask<Void> barrier = new FutureTask<>(action);
+        try {
+            queue.put(barrier);
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void run() {
+        long deadline = 0;
+        while (!stopped) {
+            Object request;
+            try {
+                if (batch.isEmpty()) {
+                    request = queue.take();
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+                } else {
+                    request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                flush();
+                closeChannel();
+                return;
+            }
+            if (request instanceof String entry) {
+                batch.append(entry).append(LINE_SEPARATOR);
+                // Keep collecting until the batch is big enough or old enough.
+                if (batch.length() < FLUSH_CHARS && System.nanoTime() - deadline < 0) {
+                    continue;
+                }
+            }
+            flush();
+            if (request instanceof FutureTask<?> barrier) {
+                barrier.run();
+            }
+        }
+    }
+
+    // Write failures drop the batch, like every other history write; the next batch reopens the file.
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            appender.append(batch);
+        } catch (IOException e) {
+            closeChannel();
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            appender.close();
+        } catch (IOException e) {
+            // Nothing left to flush; the OS already has every byte written.
+        }
+    }
+}
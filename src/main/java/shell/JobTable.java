@@ -0,0 +1,185 @@
+package shell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntSupplier;
+
+/**
+ * Background jobs started with {@code &}. Each job runs its pipeline on a shell thread; external
+ * commands started on that thread (or on the stage threads it spawns) register their
+ * {@link Process} through {@link #track}, and a job is done once its thread has finished and
+ * every registered process has exited ({@link Process#onExit}).
+ */
+public class JobTable {
+    // Inherited by the stage and pump threads a job starts, so their processes find the job.
+    private static final InheritableThreadLocal<Job> CURRENT = new InheritableThreadLocal<>();
+
+    private final List<Job> jobs = new ArrayList<>();
+
+    // Runs body in the background; its result is the job's exit status. Like bash, the new job
+    // gets the highest id in use plus one.
+    public synchronized Job start(String commandLine, IntSupplier body) {
+        int id = 1;
+        for (Job job : jobs) {
+            id = Math.max(id, job.id() + 1);
+        }
+        Job job = new Job(id, commandLine);
+        jobs.add(job);
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        ShellThreads.start("job-" + id, null, () -> {
+            CURRENT.set(job);
+            try {
+                job.exitStatus = body.getAsInt();
+            } finally {
+                CURRENT.remove();
+                finished.complete(null);
+            }
+        });
+        finished.thenCompose(ignored -> job.processesExited())
+                .whenComplete((ignored, error) -> job.done.complete(null));
+        return job;
+    }
+
+    // Called right after a process starts; a no-op outside background jobs.
+    public static void track(Process process) {
+        Job job = CURRENT.get();
+        if (job != null) {
+            job.processes.add(process);
+            job.started.complete(process.pid());
+        }
+    }
+
+    public synchronized List<Job> list() {
+        return List.copyOf(jobs);
+    }
+
+    public synchronized boolean isEmpty() {
+        return jobs.isEmpty();
+    }
+
+    public synchronized void remove(Job job) {
+        jobs.remove(job);
+    }
+
+    // Resolves %n, n, %%, %+ and %- (or no spec, meaning the current job); null if there is none.
+    public synchronized Job find(String spec) {
+        if (jobs.isEmpty()) {
+            return null;
+        }
+        if (spec == null || spec.equals("%%") || spec.equals("%+") || spec.equals("%")) {
+            return jobs.get(jobs.size() - 1);
+        }
+        if (spec.equals("%-")) {
+            return jobs.size() > 1 ? jobs.get(jobs.size() - 2) : jobs.get(0);
+        }
+        String number = spec.startsWith("%") ? spec.substring(1) : spec;
+        try {
+            int id = Integer.parseInt(number);
+            for (Job job : jobs) {
+                if (job.id() == id) {
+                    return job;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Not a job number.
+        }
+        return null;
+    }
+
+    // The job that started the process with this pid, or null.
+    public synchronized Job findByPid(String pid) {
+        long value;
+        try {
+            value = Long.parseLong(pid);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        for (Job job : jobs) {
+            for (Process process : job.processes) {
+                if (process.pid() == value) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    // '+' for the current (most recent) job, '-' for the previous one, ' ' otherwise.
+    public synchronized char marker(Job job) {
+        int index = jobs.indexOf(job);
+        if (index >= 0 && index == jobs.size() - 1) {
+            return '+';
+        }
+        if (index >= 0 && index == jobs.size() - 2) {
+            return '-';
+        }
+        return ' ';
+    }
+
+    // The bash "jobs" line, e.g. "[1]+  Running                 sleep 10 &".
+    public static String describe(Job job, char marker) {
+        String status = job.isDone() ? "Done" : "Running";
+        String command = job.isDone() ? job.commandLine() : job.commandLine() + " &";
+        return "[" + job.id() + "]" + marker + "  " + String.format("%-24s", status) + command;
+    }
+
+    public static final class Job {
+        private final int id;
+        private final String commandLine;
+        private final List<Process> processes = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Long> started = new CompletableFuture<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile int exitStatus;
+
+        private Job(int id, String commandLine) {
+            this.id = id;
+            this.commandLine = commandLine;
+            done.thenRun(() -> started.complete(-1L));
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public String commandLine() {
+            return commandLine;
+        }
+
+        public boolean isDone() {
+            return done.isDone();
+        }
+
+        // Meaningful once the job is done.
+        public int exitStatus() {
+            return exitStatus;
+        }
+
+        public List<Process> processes() {
+            return List.copyOf(processes);
+        }
+
+        // Pid of the job's first process, or -1 once it has finished without starting any.
+        public long awaitFirstPid() {
+            return started.join();
+        }
+
+        public void await() throws InterruptedException {
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                // done never completes exceptionally.
+            }
+        }
+
+        private CompletableFuture<Void> processesExited() {
+            List<CompletableFuture<Process>> exits = new ArrayList<>();
+            for (Process process : processes) {
+                exits.add(process.onExit());
+            }
+            return CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+}
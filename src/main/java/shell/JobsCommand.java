@@ -0,0 +1,36 @@
+package shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class JobsCommand implements CommandRunner {
+    private static JobsCommand instance;
+
+    private JobsCommand() {
+    }
+
+    public static JobsCommand getInstance() {
+        if (instance == null) {
+            instance = new JobsCommand();
+        }
+        return instance;
+    }
+
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        ShellContext context = cmd.getContext();
+        if (context == null) {
+            return;
+        }
+        JobTable jobs = context.getJobs();
+        try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+            for (JobTable.Job job : jobs.list()) {
+                stdout.println(JobTable.describe(job, jobs.marker(job)));
+                // Like bash, a finished job is reported once and then forgotten.
+                if (job.isDone()) {
+                    jobs.remove(job);
+                }
+            }
+        }
+    }
+}
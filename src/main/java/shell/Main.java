@@ -1,32 +1,94 @@
 package shell;
 
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Scanner;
 import org.jline.reader.LineReader;
 
 public class Main {
 
-    private static final Scanner SCANNER = new Scanner(System.in);
     private static final String PROMPT = "$ ";
     private static final ShellContext CONTEXT = new ShellContext();
-    private static final AutoCompleter AUTO_COMPLETER = new AutoCompleter(PROMPT, CONTEXT);
-    private static final LineReader LINE_READER = AUTO_COMPLETER.buildLineReader();
     private static final Shell SHELL = new Shell(CONTEXT);
+
     public static void main(String[] args) throws Exception {
+        ExternalCommand.useProcessStdio(System.out, System.err);
+        configureCommandCache();
+
+        if (args.length > 0) {
+            System.exit(runBatch(args));
+        }
+
         HistoryCommand.initializeFromEnv(CONTEXT);
+        AutoCompleter autoCompleter = new AutoCompleter(PROMPT, CONTEXT);
+        LineReader lineReader = autoCompleter.buildLineReader();
+        Scanner scanner = lineReader == null ? new Scanner(System.in) : null;
 
         while (true) {
-            String input = read();
+            reportFinishedJobs();
+            String input = lineReader != null
+                    ? autoCompleter.readLine(lineReader)
+                    : read(scanner);
             SHELL.evalInput(input);
         }
     }
 
-    private static String read() {
-        if (LINE_READER != null) {
-            return AUTO_COMPLETER.readLine(LINE_READER);
+    // "-c <commands>" or "<script> [args...]": no prompt, no line editor, no history.
+    private static int runBatch(String[] args) throws Exception {
+        CONTEXT.setHistoryEnabled(false);
+        if ("-c".equals(args[0])) {
+            if (args.length < 2) {
+                System.err.println("-c: option requires an argument");
+                return 2;
+            }
+            ScriptRunner.run(SHELL, new StringReader(args[1]));
+            return CONTEXT.getExitStatus();
         }
 
+        Path script = Path.of(args[0]);
+        if (!Files.isRegularFile(script)) {
+            System.err.println(args[0] + ": No such file or directory");
+            return 127;
+        }
+        ScriptRunner.runFile(SHELL, script);
+        return CONTEXT.getExitStatus();
+    }
+
+    // Like bash, finished background jobs are announced just before the next prompt.
+    private static void reportFinishedJobs() {
+        JobTable jobs = CONTEXT.getJobs();
+        for (JobTable.Job job : jobs.list()) {
+            if (job.isDone()) {
+                System.err.println(JobTable.describe(job, jobs.marker(job)));
+                jobs.remove(job);
+            }
+        }
+    }
+
+    // SHELL_COMMAND_CACHE=<entries> enables the parsed-line cache; unset or invalid leaves it off.
+    private static void configureCommandCache() {
+        String size = CONTEXT.getEnv("SHELL_COMMAND_CACHE");
+        if (size == null || size.isBlank()) {
+            return;
+        }
+        try {
+            int capacity = Integer.parseInt(size.trim());
+            if (capacity > 0) {
+                SHELL.setCommandCache(new CommandCache(capacity));
+            }
+        } catch (NumberFormatException e) {
+            // Leave the cache disabled.
+        }
+    }
+
+    private static String read(Scanner scanner) {
         System.out.print(PROMPT);
         System.out.flush();
-        return SCANNER.nextLine();
+        if (!scanner.hasNextLine()) {
+            HistoryCommand.writeOnExit(CONTEXT);
+            System.exit(0);
+        }
+        return scanner.nextLine();
     }
 }
@@ -2,7 +2,6 @@ package shell;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 
 public class PwdCommand implements CommandRunner {
     private static PwdCommand instance;
@@ -19,12 +18,13 @@ public class PwdCommand implements CommandRunner {
 
     @Override
     public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
-        PrintStream stdout = CommandRunner.toPrintStream(out);
-        ShellContext context = cmd.getContext();
-        String workspace = context != null ? context.getWorkspace() : cmd.getWorkspace();
-        if (workspace == null || workspace.isBlank()) {
-            workspace = System.getProperty("user.dir");
+        try (BuiltinOutput stdout = BuiltinOutput.of(out)) {
+            ShellContext context = cmd.getContext();
+            String workspace = context != null ? context.getWorkspace() : cmd.getWorkspace();
+            if (workspace == null || workspace.isBlank()) {
+                workspace = System.getProperty("user.dir");
+            }
+            stdout.println(workspace);
         }
-        stdout.println(workspace);
     }
 }
@@ -0,0 +1,227 @@
+package shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer/single-consumer byte pipe over a power-of-two ring buffer. Reads and writes
+ * move whole chunks with {@link System#arraycopy}, and a blocked side parks until the other side
+ * makes progress or closes, instead of polling like {@link java.io.PipedInputStream}.
+ *
+ * <p>Closing the sink is end-of-stream for the source once drained; closing the source makes
+ * further writes fail like a broken pipe.
+ */
+public final class RingBufferPipe {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    // Brief spin before parking when the other side can run concurrently; pointless on one core.
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 256 : 0;
+
+    private final byte[] buffer;
+    private final int mask;
+    // Monotonic positions; each has exactly one writer thread. The padding keeps them on separate
+    // cache lines so the producer and consumer do not invalidate each other on every update.
+    private volatile long readPos;
+    private long p1, p2, p3, p4, p5, p6, p7;
+    private volatile long writePos;
+    private long q1, q2, q3, q4, q5, q6, q7;
+    // Last observed position of the other side, so the fast path skips the shared volatile read.
+    private long cachedWritePos;
+    private long cachedReadPos;
+    private volatile boolean sinkClosed;
+    private volatile boolean sourceClosed;
+    private volatile Thread parkedReader;
+    private volatile Thread parkedWriter;
+    private final Source source = new Source();
+    private final Sink sink = new Sink();
+
+    public RingBufferPipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RingBufferPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    public InputStream source() {
+        return source;
+    }
+
+    public OutputStream sink() {
+        return sink;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    private int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            if (sourceClosed) {
+                throw new IOException("Stream closed");
+            }
+            long read = readPos;
+            long available = cachedWritePos - read;
+            if (available <= 0) {
+                cachedWritePos = writePos;
+                available = cachedWritePos - read;
+            }
+            if (available > 0) {
+                int count = (int) Math.min(length, available);
+                int index = (int) (read & mask);
+                int first = Math.min(count, buffer.length - index);
+                System.arraycopy(buffer, index, target, offset, first);
+                if (first < count) {
+                    System.arraycopy(buffer, 0, target, offset + first, count - first);
+                }
+                readPos = read + count;
+                Thread writer = parkedWriter;
+                // Wake a blocked writer only once half the buffer is free, so it refills in bulk.
+                if (writer != null && cachedWritePos - (read + count) <= buffer.length >> 1) {
+                    LockSupport.unpark(writer);
+                }
+                return count;
+            }
+            if (sinkClosed) {
+                // Re-check: the writer may have published bytes right before closing.
+                if (writePos == read) {
+                    return -1;
+                }
+                continue;
+            }
+            if (spinWhile(() -> writePos == read && !sinkClosed)) {
+                continue;
+            }
+            parkedReader = Thread.currentThread();
+            if (writePos == read && !sinkClosed) {
+                LockSupport.park(this);
+            }
+            parkedReader = null;
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading from pipe");
+            }
+        }
+    }
+
+    private void write(byte[] source, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (sinkClosed) {
+                throw new IOException("Stream closed");
+            }
+            if (sourceClosed) {
+                throw new IOException("Broken pipe");
+            }
+            long write = writePos;
+            int free = buffer.length - (int) (write - cachedReadPos);
+            if (free <= 0) {
+                cachedReadPos = readPos;
+                free = buffer.length - (int) (write - cachedReadPos);
+            }
+            if (free > 0) {
+                int count = Math.min(length, free);
+                int index = (int) (write & mask);
+                int first = Math.min(count, buffer.length - index);
+                System.arraycopy(source, offset, buffer, index, first);
+                if (first < count) {
+                    System.arraycopy(source, offset + first, buffer, 0, count - first);
+                }
+                writePos = write + count;
+                LockSupport.unpark(parkedReader);
+                offset += count;
+                length -= count;
+                continue;
+            }
+            if (spinWhile(() -> writePos - readPos == buffer.length && !sourceClosed)) {
+                continue;
+            }
+            parkedWriter = Thread.currentThread();
+            if (writePos - readPos == buffer.length && !sourceClosed) {
+                LockSupport.park(this);
+            }
+            parkedWriter = null;
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing to pipe");
+            }
+        }
+    }
+
+    // Returns true once the condition clears within the spin budget.
+    private static boolean spinWhile(BooleanSupplier blocked) {
+        for (int i = 0; i < SPIN_LIMIT; i++) {
+            if (!blocked.getAsBoolean()) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        // Giving up the core once lets the other side batch more work before we pay for a park.
+        Thread.yield();
+        return !blocked.getAsBoolean();
+    }
+
+    private final class Source extends InputStream {
+        // Safe to share: only the single consumer thread reads.
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int count = RingBufferPipe.this.read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, target.length);
+            return RingBufferPipe.this.read(target, offset, length);
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, writePos - readPos);
+        }
+
+        @Override
+        public void close() {
+            sourceClosed = true;
+            LockSupport.unpark(parkedWriter);
+        }
+    }
+
+    private final class Sink extends OutputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int value) throws IOException {
+            single[0] = (byte) value;
+            RingBufferPipe.this.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, source.length);
+            RingBufferPipe.this.write(source, offset, length);
+        }
+
+        @Override
+        public void close() {
+            sinkClosed = true;
+            LockSupport.unpark(parkedReader);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package shell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class ScriptRunner {
+    // Large enough that multi-megabyte scripts are read in a few hundred syscalls.
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private ScriptRunner() {
+    }
+
+    public static long runFile(Shell shell, Path script) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(script), StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            return run(shell, reader);
+        }
+    }
+
+    // Streams the script one line at a time, so memory stays flat regardless of its size.
+    public static long run(Shell shell, Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader
+                ? (BufferedReader) source
+                : new BufferedReader(source, BUFFER_SIZE);
+        long executed = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (isBlankOrComment(line)) {
+                continue;
+            }
+            shell.evalInput(line);
+            executed++;
+        }
+        return executed;
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                return ch == '#';
+            }
+        }
+        return true;
+    }
+}
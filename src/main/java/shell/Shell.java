@@ -1,11 +1,16 @@
 package shell;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
@@ -13,6 +18,7 @@ import java.util.List;
 
 public class Shell {
     private final ShellContext context;
+    private CommandCache commandCache;
 
     public Shell() {
         this(new ShellContext());
@@ -26,127 +32,383 @@ public class Shell {
         return context;
     }
 
+    public CommandCache getCommandCache() {
+        return commandCache;
+    }
+
+    // Opt-in: with a cache set, repeated lines skip parsing and PATH resolution.
+    public void setCommandCache(CommandCache commandCache) {
+        this.commandCache = commandCache;
+    }
+
     public void evalInput(String inputString) {
         if (inputString != null && !inputString.isBlank()) {
-            HistoryCommand.record(context, inputString.trim());
+            HistoryCommand.record(context, inputString);
         }
-        List<List<String>> pipelineParts = CCParser.splitPipelineTokens(inputString);
-        if (pipelineParts.size() > 1) {
-            evalPipeline(pipelineParts);
+        CommandCache cache = commandCache;
+        if (cache == null || inputString == null) {
+            List<CCParser.Pipeline> pipelines = parseList(inputString);
+            if (pipelines != null) {
+                evalList(pipelines);
+            }
             return;
         }
-        CCParser.ParsedLine parsed = CCParser.parseLine(context, inputString);
-        eval(parsed);
+
+        CommandCache.Key key = new CommandCache.Key(inputString, context.fingerprint());
+        long hashGeneration = CommandResolver.hashGeneration(context);
+        CommandCache.Entry entry = cache.get(key);
+        if (entry == null || entry.hashGeneration() != hashGeneration) {
+            CCParser.Pipeline pipeline;
+            if (entry != null) {
+                pipeline = entry.pipeline();
+            } else {
+                // Only a plain foreground pipeline is cached; lists, jobs and lines using $? are not.
+                List<CCParser.Pipeline> pipelines = parseList(inputString);
+                if (pipelines == null) {
+                    return;
+                }
+                if (pipelines.size() != 1 || pipelines.get(0).background() || pipelines.get(0).hasExpansions()) {
+                    evalList(pipelines);
+                    return;
+                }
+                pipeline = pipelines.get(0);
+            }
+            Binding binding = bind(pipeline);
+            if (binding.stages() == null) {
+                context.setPipeStatus(binding.status());
+                return;
+            }
+            entry = new CommandCache.Entry(pipeline, binding.stages(), hashGeneration);
+            cache.put(key, entry);
+        }
+        context.setPipeStatus(run(entry.stages(), System.in));
     }
 
-    public void eval(CCParser.ParsedLine parsed) {
-        if (parsed == null || parsed.command() == null) {
-            return;
+    // Like bash, a syntax error runs nothing on the line and sets $? to 2.
+    private List<CCParser.Pipeline> parseList(String inputString) {
+        try {
+            return CCParser.parseList(inputString);
+        } catch (CCParser.SyntaxException e) {
+            System.err.println(e.getMessage());
+            context.setPipeStatus(2);
+            return null;
         }
+    }
 
-        if (parsed.redirectTokens() == null || parsed.redirectTokens().isEmpty()) {
-            runCommand(parsed.command());
-            return;
+    // Runs each and-or list in turn; one that ends in "&" becomes a single background job.
+    private void evalList(List<CCParser.Pipeline> pipelines) {
+        int start = 0;
+        while (start < pipelines.size()) {
+            int end = start + 1;
+            while (end < pipelines.size() && pipelines.get(end).operator() != CCParser.ListOperator.SEQUENCE) {
+                end++;
+            }
+            List<CCParser.Pipeline> andOr = pipelines.subList(start, end);
+            if (andOr.get(andOr.size() - 1).background()) {
+                evalBackground(andOr);
+            } else {
+                context.setPipeStatus(runAndOr(andOr, System.in, context.getPipeStatus()));
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            start = end;
+        }
+    }
+
+    // "&&" runs a pipeline only after success and "||" only after failure; a skipped pipeline
+    // leaves the statuses as they were. Returns the statuses of the last pipeline that ran.
+    private int[] runAndOr(List<CCParser.Pipeline> andOr, InputStream stdin, int[] pipeStatus) {
+        int[] statuses = pipeStatus;
+        for (CCParser.Pipeline pipeline : andOr) {
+            int last = statuses[statuses.length - 1];
+            boolean skip = switch (pipeline.operator()) {
+                case AND -> last != 0;
+                case OR -> last == 0;
+                case SEQUENCE -> false;
+            };
+            if (skip) {
+                continue;
+            }
+            Binding binding = bind(CCParser.expandStatus(pipeline, statuses));
+            statuses = binding.stages() == null ? new int[] {binding.status()} : run(binding.stages(), stdin);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return statuses;
+    }
+
+    // Starts the and-or list as a job with empty stdin and reports "[id] pid" like bash. A list
+    // led by a builtin may run to the end before it starts a process, so it reports "[id]" at once.
+    private void evalBackground(List<CCParser.Pipeline> andOr) {
+        Shell subshell = new Shell(context.copyForJob());
+        int[] pipeStatus = subshell.context.getPipeStatus();
+        InputStream stdin = InputStream.nullInputStream();
+        JobTable.Job job = context.getJobs().start(listText(andOr), () -> {
+            int[] statuses = subshell.runAndOr(andOr, stdin, pipeStatus);
+            subshell.context.setPipeStatus(statuses);
+            return statuses[statuses.length - 1];
+        });
+        long pid = startsWithBuiltin(andOr.get(0)) ? -1 : job.awaitFirstPid();
+        System.err.println(pid < 0 ? "[" + job.id() + "]" : "[" + job.id() + "] " + pid);
+        context.setPipeStatus(0);
+    }
+
+    private static boolean startsWithBuiltin(CCParser.Pipeline pipeline) {
+        List<String> words = pipeline.stages().isEmpty() ? List.of() : pipeline.stages().get(0).words();
+        return !words.isEmpty() && CommandResolver.isBuiltin(words.get(0));
+    }
+
+    // The and-or list's text for job listings, e.g. "sleep 1 && echo done".
+    private static String listText(List<CCParser.Pipeline> andOr) {
+        StringBuilder text = new StringBuilder();
+        for (CCParser.Pipeline pipeline : andOr) {
+            if (!text.isEmpty()) {
+                text.append(pipeline.operator() == CCParser.ListOperator.AND ? " && " : " || ");
+            }
+            text.append(pipeline.source());
+        }
+        return text.toString();
+    }
+
+    public void eval(CCParser.Pipeline pipeline) {
+        if (pipeline != null) {
+            context.setPipeStatus(runAndOr(List.of(pipeline), System.in, context.getPipeStatus()));
         }
+    }
 
-        List<String> redirectTokens = parsed.redirectTokens();
+    public void eval(CCParser.ParsedLine parsed) {
+        if (parsed == null || parsed.command() == null || parsed.command().getName() == null) {
+            return;
+        }
 
         CommandRunner runner = resolveRunner(parsed.command());
         if (runner == null) {
             System.out.println(parsed.command().getName() + ": command not found");
+            context.setPipeStatus(127);
             return;
         }
-        boolean append = parsed.redirectType() == CCParser.RedirectType.STDOUT_APPEND
-                || parsed.redirectType() == CCParser.RedirectType.STDERR_APPEND;
-        try (OutputStream redirectStream = openRedirectStream(parsed.command(),
-                redirectTokens.get(0),
-                append)) {
-            if (parsed.redirectType() == CCParser.RedirectType.STDERR
-                    || parsed.redirectType() == CCParser.RedirectType.STDERR_APPEND) {
-                runner.runWithStreams(parsed.command(), System.in, System.out, redirectStream);
-            } else {
-                runner.runWithStreams(parsed.command(), System.in, redirectStream, System.err);
-            }
-        } catch (RuntimeException e) {
-            reportRunError(parsed.command(), e);
-        } catch (Exception e) {
-            reportRunError(parsed.command(), new RuntimeException(e.getMessage(), e));
+        if (hasMissingTarget(parsed.redirects())) {
+            context.setPipeStatus(2);
+            return;
         }
+        parsed.command().setExitStatus(0);
+        runStage(new BoundStage(parsed.command(), runner, parsed.redirects()), System.in);
+        context.setPipeStatus(parsed.command().getExitStatus());
     }
 
-    public void evalPipeline(List<List<String>> parts) {
-        if (parts == null || parts.isEmpty()) {
-            return;
+    public void evalPipeline(CCParser.Pipeline pipeline) {
+        Binding binding = bind(pipeline);
+        if (binding.stages() == null) {
+            context.setPipeStatus(binding.status());
+        } else if (!binding.stages().isEmpty()) {
+            resetStatuses(binding.stages());
+            runPipeline(binding.stages(), System.in);
+            context.setPipeStatus(statusesOf(binding.stages()));
+        }
+    }
+
+    // Resolves every stage up front; when the line cannot run, reports why and returns the
+    // status instead (2 for a syntax error, 127 for an unknown command).
+    private Binding bind(CCParser.Pipeline pipeline) {
+        if (pipeline == null || pipeline.stages().isEmpty()) {
+            return Binding.failed(0);
         }
 
-        List<Command> commands = new ArrayList<>();
-        List<CommandRunner> runners = new ArrayList<>();
-        for (List<String> part : parts) {
-            if (part == null || part.isEmpty()) {
-                return;
+        List<BoundStage> stages = new ArrayList<>(pipeline.stages().size());
+        for (CCParser.Stage stage : pipeline.stages()) {
+            if (stage.isEmpty()) {
+                return Binding.failed(2);
             }
-            Command command = CCParser.parseTokens(context, part);
+            if (hasMissingTarget(stage.redirects())) {
+                return Binding.failed(2);
+            }
+            Command command = CCParser.parseTokens(context, stage.words());
             CommandRunner runner = resolveRunner(command);
             if (runner == null) {
                 System.out.println(command.getName() + ": command not found");
-                return;
+                return Binding.failed(127);
             }
-            commands.add(command);
-            runners.add(runner);
+            stages.add(new BoundStage(command, runner, stage.redirects()));
         }
+        return new Binding(List.copyOf(stages), 0);
+    }
 
-        boolean allExternal = true;
-        for (Command command : commands) {
-            if (command.isBuiltin()) {
-                allExternal = false;
-                break;
+    // stdin is System.in in the foreground; background jobs get an empty stream instead.
+    // Returns each stage's exit status, in order.
+    private int[] run(List<BoundStage> stages, InputStream stdin) {
+        resetStatuses(stages);
+        if (stages.size() == 1) {
+            runStage(stages.get(0), stdin);
+        } else {
+            runPipeline(stages, stdin);
+        }
+        return statusesOf(stages);
+    }
+
+    // Bound stages are reused by the command cache, so each run starts from a clean status.
+    private static void resetStatuses(List<BoundStage> stages) {
+        for (BoundStage stage : stages) {
+            stage.command().setExitStatus(0);
+        }
+    }
+
+    private static int[] statusesOf(List<BoundStage> stages) {
+        int[] statuses = new int[stages.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = stages.get(i).command().getExitStatus();
+        }
+        return statuses;
+    }
+
+    private void runStage(BoundStage stage, InputStream stdin) {
+        Command command = stage.command();
+        if (stage.redirects().isEmpty()) {
+            try {
+                if (stdin == System.in) {
+                    stage.runner().run(command);
+                } else {
+                    stage.runner().runWithStreams(command, stdin, System.out, System.err);
+                }
+            } catch (RuntimeException e) {
+                reportRunError(command, e);
             }
+            return;
         }
-        if (allExternal) {
+
+        OutputStream[] streams = new OutputStream[2];
+        InputStream in = stdin;
+        try {
+            if (stage.runner() instanceof ExternalCommand external) {
+                ProcessBuilder.Redirect[] files = new ProcessBuilder.Redirect[2];
+                StageInput input = openRedirectFiles(command, stage.redirects(), files);
+                ProcessBuilder.Redirect inFile = input != null ? input.redirect() : null;
+                if (input != null && inFile == null) {
+                    in = input.open();
+                }
+                external.runWithRedirects(command, in, System.out, System.err, inFile, files[0], files[1]);
+                return;
+            }
+            StageInput input = openRedirectStreams(command, stage.redirects(), streams);
+            if (input != null) {
+                in = input.open();
+            }
+            OutputStream out = streams[0] != null ? streams[0] : System.out;
+            OutputStream err = streams[1] != null ? streams[1] : System.err;
+            stage.runner().runWithStreams(command, in, out, err);
+        } catch (RuntimeException e) {
+            reportRunError(command, e);
+        } catch (Exception e) {
+            reportRunError(command, new RuntimeException(e.getMessage(), e));
+        } finally {
+            closeQuietly(streams[0]);
+            closeQuietly(streams[1]);
+            if (in != stdin) {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    private void runPipeline(List<BoundStage> stages, InputStream stdin) {
+        List<List<BoundStage>> segments = planSegments(stages);
+        if (segments.size() == 1 && segments.get(0).size() > 1 && stdin == System.in
+                && !hasRedirects(segments.get(0))) {
             // For external-only pipelines, use OS-level piping for correct stream behavior.
-            evalExternalPipeline(commands);
+            evalExternalPipeline(commandsOf(segments.get(0)));
             return;
         }
 
         List<Thread> threads = new ArrayList<>();
-        InputStream nextInput = System.in;
-        for (int i = 0; i < commands.size(); i++) {
-            Command command = commands.get(i);
-            CommandRunner runner = runners.get(i);
+        InputStream nextInput = stdin;
+        for (int i = 0; i < segments.size(); i++) {
+            List<BoundStage> segment = segments.get(i);
+            BoundStage stage = segment.get(0);
+            Command command = stage.command();
+            CommandRunner runner = stage.runner();
+            List<Command> segmentCommands = segment.size() > 1 ? commandsOf(segment) : null;
             InputStream input = nextInput;
-            OutputStream output = System.out;
-            if (i < commands.size() - 1) {
-                try {
-                    PipedOutputStream pipeOut = new PipedOutputStream();
-                    PipedInputStream pipeIn = new PipedInputStream(pipeOut);
-                    output = pipeOut;
-                    nextInput = pipeIn;
-                } catch (Exception e) {
-                    reportRunError(command, new RuntimeException(e.getMessage(), e));
-                    return;
+            OutputStream pipeOut = null;
+            if (i < segments.size() - 1) {
+                RingBufferPipe pipe = new RingBufferPipe();
+                pipeOut = pipe.sink();
+                nextInput = pipe.source();
+            }
+
+            OutputStream[] redirectStreams = new OutputStream[2];
+            ProcessBuilder.Redirect[] redirectFiles = new ProcessBuilder.Redirect[2];
+            // Each segment stage's stdout/stderr files; only the first stage can redirect input.
+            List<ProcessBuilder.Redirect[]> segmentFiles = new ArrayList<>();
+            ProcessBuilder.Redirect inFile = null;
+            Command opening = command;
+            try {
+                boolean external = runner instanceof ExternalCommand;
+                StageInput stageInput = external
+                        ? openRedirectFiles(command, stage.redirects(), redirectFiles)
+                        : openRedirectStreams(command, stage.redirects(), redirectStreams);
+                segmentFiles.add(redirectFiles);
+                for (int k = 1; segmentCommands != null && k < segment.size(); k++) {
+                    ProcessBuilder.Redirect[] files = new ProcessBuilder.Redirect[2];
+                    opening = segment.get(k).command();
+                    openRedirectFiles(opening, segment.get(k).redirects(), files);
+                    segmentFiles.add(files);
+                }
+                if (stageInput != null) {
+                    // The redirect replaces the pipe, as in bash; closing it fails the upstream writer fast.
+                    if (input != stdin) {
+                        closeQuietly(input);
+                    }
+                    inFile = external ? stageInput.redirect() : null;
+                    input = inFile != null ? stdin : stageInput.open();
+                }
+            } catch (RuntimeException e) {
+                reportRunError(opening, e);
+                closeQuietly(redirectStreams[0]);
+                closeQuietly(redirectStreams[1]);
+                closeQuietly(pipeOut);
+                if (input != stdin) {
+                    closeQuietly(input);
                 }
+                continue;
             }
 
-            OutputStream targetOut = output;
+            OutputStream stagePipe = pipeOut;
+            OutputStream targetOut = redirectStreams[0] != null
+                    ? redirectStreams[0]
+                    : (pipeOut != null ? pipeOut : System.out);
+            OutputStream targetErr = redirectStreams[1] != null ? redirectStreams[1] : System.err;
             InputStream targetIn = input;
-            Thread thread = new Thread(() -> {
+            ProcessBuilder.Redirect targetInFile = inFile;
+            String role = segmentCommands != null ? "pipeline-segment" : "pipeline-stage";
+            Thread thread = ShellThreads.start(role, command, () -> {
                 try {
-                    // Execute each stage in a thread and wire its output to the next stage.
-                    runner.runWithStreams(command, targetIn, targetOut, System.err);
+                    // Execute each segment in a thread and wire its output to the next segment.
+                    if (segmentCommands != null) {
+                        ExternalCommand.getInstance().runPipelineWithRedirects(segmentCommands, targetIn, targetOut,
+                                targetErr, targetInFile, segmentFiles);
+                    } else if (runner instanceof ExternalCommand external) {
+                        external.runWithRedirects(command, targetIn, targetOut, targetErr,
+                                targetInFile, redirectFiles[0], redirectFiles[1]);
+                    } else {
+                        runner.runWithStreams(command, targetIn, targetOut, targetErr);
+                    }
                 } catch (RuntimeException e) {
                     reportRunError(command, e);
                 } finally {
-                    if (targetOut != System.out) {
-                        try {
-                            targetOut.close();
-                        } catch (Exception e) {
-                            // Ignore close failures.
-                        }
+                    closeQuietly(redirectStreams[0]);
+                    closeQuietly(redirectStreams[1]);
+                    closeQuietly(stagePipe);
+                    if (targetIn != stdin) {
+                        // Unblocks an upstream writer when this stage stops reading early.
+                        closeQuietly(targetIn);
                     }
                 }
             });
             threads.add(thread);
-            thread.start();
+        }
+
+        if (threads.isEmpty()) {
+            return;
         }
 
         Thread last = threads.get(threads.size() - 1);
@@ -154,6 +416,10 @@ public class Shell {
             // Wait for the last stage before interrupting upstream stages.
             last.join();
         } catch (InterruptedException e) {
+            // Stages are daemon virtual threads; stop them rather than leave them running.
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
             Thread.currentThread().interrupt();
             return;
         }
@@ -175,6 +441,57 @@ public class Shell {
         }
     }
 
+    // Splits stages into maximal runs of external commands, which share kernel pipes; builtins
+    // stand alone and are bridged through Java. Redirects are applied to the processes, so a run
+    // only breaks where one replaces a pipe: an input redirect starts a run, an output one ends it.
+    static List<List<BoundStage>> planSegments(List<BoundStage> stages) {
+        List<List<BoundStage>> segments = new ArrayList<>();
+        List<BoundStage> run = null;
+        for (BoundStage stage : stages) {
+            if (stage.command().isBuiltin()) {
+                run = null;
+                segments.add(List.of(stage));
+                continue;
+            }
+            if (run == null || redirects(stage, true)) {
+                run = new ArrayList<>();
+                segments.add(run);
+            }
+            run.add(stage);
+            if (redirects(stage, false)) {
+                run = null;
+            }
+        }
+        return segments;
+    }
+
+    // Whether stage redirects its stdin (input) or its stdout (!input).
+    private static boolean redirects(BoundStage stage, boolean input) {
+        for (CCParser.Redirect redirect : stage.redirects()) {
+            if (input ? redirect.isInput() : !redirect.isInput() && !redirect.isStderr()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRedirects(List<BoundStage> stages) {
+        for (BoundStage stage : stages) {
+            if (!stage.redirects().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Command> commandsOf(List<BoundStage> stages) {
+        List<Command> commands = new ArrayList<>(stages.size());
+        for (BoundStage stage : stages) {
+            commands.add(stage.command());
+        }
+        return commands;
+    }
+
     public void evalExternalPipeline(List<Command> commands) {
         boolean interactive = System.console() != null;
         List<ProcessBuilder> builders = new ArrayList<>();
@@ -210,9 +527,10 @@ public class Shell {
         try {
             // Let the OS wire the pipeline between all external commands.
             processes = ProcessBuilder.startPipeline(builders);
+            processes.forEach(JobTable::track);
             Process last = processes.get(processes.size() - 1);
             if (!interactive) {
-                stdoutThread = new Thread(() -> {
+                stdoutThread = ShellThreads.start("pipeline-stdout", commands.get(commands.size() - 1), () -> {
                     try {
                         // Stream the last process output into System.out.
                         last.getInputStream().transferTo(System.out);
@@ -226,7 +544,6 @@ public class Shell {
                         }
                     }
                 });
-                stdoutThread.start();
             }
 
             // Wait for the last stage, then tear down earlier stages (e.g., tail -f).
@@ -241,8 +558,8 @@ public class Shell {
                     process.destroy();
                 }
             }
-            for (Process process : processes) {
-                process.waitFor();
+            for (int i = 0; i < processes.size(); i++) {
+                commands.get(i).setExitStatus(processes.get(i).waitFor());
             }
         } catch (Exception e) {
             if (stdoutThread != null && stdoutThread.isAlive()) {
@@ -263,26 +580,20 @@ public class Shell {
         CommandRunner runner = resolveRunner(command);
         if (runner == null) {
             System.out.println(command.getName() + ": command not found");
+            context.setPipeStatus(127);
             return;
         }
+        command.setExitStatus(0);
         try {
             runner.run(command);
         } catch (RuntimeException e) {
             reportRunError(command, e);
         }
+        context.setPipeStatus(command.getExitStatus());
     }
 
     private CommandRunner resolveRunner(Command command) {
-        if (command == null || command.getName() == null || command.getName().isBlank()) {
-            return null;
-        }
-        if (command.isBuiltin()) {
-            return CommandResolver.getBuiltinMap().get(command.getName());
-        }
-        if (command.isRunable()) {
-            return ExternalCommand.getInstance();
-        }
-        return null;
+        return CommandResolver.runnerFor(command);
     }
 
     private void reportRunError(Command command, RuntimeException e) {
@@ -292,26 +603,99 @@ public class Shell {
         }
 
         System.err.println(command.getName() + ": " + message);
+        command.setExitStatus(1);
+    }
+
+    private boolean hasMissingTarget(List<CCParser.Redirect> redirects) {
+        for (CCParser.Redirect redirect : redirects) {
+            if (redirect.target() == null) {
+                System.err.println("syntax error near unexpected token `newline'");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Opens every redirect in order (like bash); the last one for each descriptor wins.
+    // Returns the stage's input redirect, or null when it reads its inherited or piped stdin.
+    private StageInput openRedirectStreams(Command command,
+                                           List<CCParser.Redirect> redirects,
+                                           OutputStream[] streams) {
+        StageInput input = null;
+        for (CCParser.Redirect redirect : redirects) {
+            if (redirect.isInput()) {
+                input = checkRedirectInput(command, redirect);
+                continue;
+            }
+            int fd = redirect.isStderr() ? 1 : 0;
+            OutputStream previous = streams[fd];
+            streams[fd] = openRedirectStream(command, redirect.target(), redirect.isAppend());
+            closeQuietly(previous);
+        }
+        return input;
+    }
+
+    // External commands get their files from the kernel instead of a Java pump. Every target is
+    // still created or truncated here, in order and with the same errors as openRedirectStreams;
+    // the child then appends to the last one for each descriptor.
+    private StageInput openRedirectFiles(Command command,
+                                         List<CCParser.Redirect> redirects,
+                                         ProcessBuilder.Redirect[] files) {
+        StageInput input = null;
+        for (CCParser.Redirect redirect : redirects) {
+            if (redirect.isInput()) {
+                input = checkRedirectInput(command, redirect);
+                continue;
+            }
+            int fd = redirect.isStderr() ? 1 : 0;
+            closeQuietly(openRedirectStream(command, redirect.target(), redirect.isAppend()));
+            files[fd] = ProcessBuilder.Redirect.appendTo(resolveRedirectPath(command, redirect.target()).toFile());
+        }
+        return input;
+    }
+
+    // A here-string is the word plus a newline, like bash; a file must exist and be readable.
+    private static StageInput checkRedirectInput(Command command, CCParser.Redirect redirect) {
+        if (redirect.type() == CCParser.RedirectType.HERE_STRING) {
+            return new StageInput(null, (redirect.target() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Path path;
+        try {
+            path = resolveRedirectPath(command, redirect.target());
+        } catch (InvalidPathException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        if (!Files.exists(path)) {
+            throw new RuntimeException(redirect.target() + ": No such file or directory");
+        }
+        if (!Files.isReadable(path)) {
+            throw new RuntimeException(redirect.target() + ": Permission denied");
+        }
+        return new StageInput(path, null);
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (Exception e) {
+            // Ignore close failures.
+        }
     }
 
     private OutputStream openRedirectStream(Command command,
                                             String redirectPath,
                                             boolean append) {
         try {
-            Path path = Path.of(redirectPath);
-            if (!path.isAbsolute()) {
-                String base = command.getWorkspace();
-                if (base == null || base.isBlank()) {
-                    base = System.getProperty("user.dir");
-                }
-                path = Path.of(base).resolve(redirectPath);
-            }
+            Path path = resolveRedirectPath(command, redirectPath);
             if (append) {
-                return Files.newOutputStream(path.normalize(),
+                return Files.newOutputStream(path,
                         StandardOpenOption.CREATE,
                         StandardOpenOption.APPEND);
             } else {
-                return Files.newOutputStream(path.normalize(),
+                return Files.newOutputStream(path,
                         StandardOpenOption.CREATE,
                         StandardOpenOption.TRUNCATE_EXISTING);
             }
@@ -319,4 +703,44 @@ public class Shell {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
+
+    private static Path resolveRedirectPath(Command command, String redirectPath) {
+        Path path = Path.of(redirectPath);
+        if (!path.isAbsolute()) {
+            String base = command.getWorkspace();
+            if (base == null || base.isBlank()) {
+                base = System.getProperty("user.dir");
+            }
+            path = Path.of(base).resolve(redirectPath);
+        }
+        return path.normalize();
+    }
+
+    public record BoundStage(Command command, CommandRunner runner, List<CCParser.Redirect> redirects) {}
+
+    // stages is null when the pipeline cannot run; status is then its exit status.
+    private record Binding(List<BoundStage> stages, int status) {
+        static Binding failed(int status) {
+            return new Binding(null, status);
+        }
+    }
+
+    // What a stage reads instead of its inherited or piped stdin; exactly one field is set.
+    private record StageInput(Path file, byte[] text) {
+        // External commands get the file as their descriptor; a here-string has no file form.
+        ProcessBuilder.Redirect redirect() {
+            return file != null ? ProcessBuilder.Redirect.from(file.toFile()) : null;
+        }
+
+        InputStream open() {
+            if (text != null) {
+                return new ByteArrayInputStream(text);
+            }
+            try {
+                return Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+    }
 }
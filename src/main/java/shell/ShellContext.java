@@ -1,15 +1,26 @@
 package shell;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ShellContext {
     private String workspace;
-    private final List<String> history;
+    private final HistoryBuffer history = new HistoryBuffer();
     private final Map<String, String> env;
     private String historyFilePath;
-    private int lastAppendIndex;
+    // Absolute history index (see HistoryBuffer#total) up to which HISTFILE has been appended.
+    private long lastAppendIndex;
+    // HISTFILESIZE: lines HISTFILE is trimmed to; negative means never trim.
+    private int historyFileSize = -1;
+    // Appends each recorded entry to HISTFILE in the background; null when HISTFILE is unset.
+    private HistoryWriter historyWriter;
+    // Read offset into HISTFILE for "history -n"; null when HISTFILE is unset.
+    private HistoryTail historyTail;
+    private boolean historyEnabled = true;
+    private final JobTable jobs = new JobTable();
+    private volatile int[] pipeStatus = {0};
 
     public ShellContext() {
         this(System.getProperty("user.dir"), new ArrayList<>(), System.getenv());
@@ -21,10 +32,21 @@ public class ShellContext {
 
     public ShellContext(String workspace, List<String> history, Map<String, String> env) {
         this.workspace = workspace;
-        this.history = history == null ? new ArrayList<>() : history;
+        if (history != null) {
+            this.history.addAll(history);
+        }
         this.env = env == null ? System.getenv() : env;
     }
 
+    // What a background job runs against, like a bash subshell: cd, env changes and exit statuses
+    // stay in the copy. It has no history and an empty job table of its own.
+    public ShellContext copyForJob() {
+        ShellContext copy = new ShellContext(workspace, null, new HashMap<>(env));
+        copy.historyEnabled = false;
+        copy.pipeStatus = pipeStatus;
+        return copy;
+    }
+
     public String getWorkspace() {
         return workspace;
     }
@@ -35,7 +57,7 @@ public class ShellContext {
         }
     }
 
-    public List<String> getHistory() {
+    public HistoryBuffer getHistory() {
         return history;
     }
 
@@ -47,14 +69,67 @@ public class ShellContext {
         this.historyFilePath = historyFilePath;
     }
 
-    public int getLastAppendIndex() {
+    public long getLastAppendIndex() {
         return lastAppendIndex;
     }
 
-    public void setLastAppendIndex(int lastAppendIndex) {
+    public void setLastAppendIndex(long lastAppendIndex) {
         this.lastAppendIndex = lastAppendIndex;
     }
 
+    public int getHistoryFileSize() {
+        return historyFileSize;
+    }
+
+    public void setHistoryFileSize(int historyFileSize) {
+        this.historyFileSize = historyFileSize;
+    }
+
+    public HistoryWriter getHistoryWriter() {
+        return historyWriter;
+    }
+
+    public void setHistoryWriter(HistoryWriter historyWriter) {
+        this.historyWriter = historyWriter;
+    }
+
+    public HistoryTail getHistoryTail() {
+        return historyTail;
+    }
+
+    public void setHistoryTail(HistoryTail historyTail) {
+        this.historyTail = historyTail;
+    }
+
+    public boolean isHistoryEnabled() {
+        return historyEnabled;
+    }
+
+    public void setHistoryEnabled(boolean historyEnabled) {
+        this.historyEnabled = historyEnabled;
+    }
+
+    // $?: the status of the last stage of the last foreground pipeline.
+    public int getExitStatus() {
+        int[] statuses = pipeStatus;
+        return statuses[statuses.length - 1];
+    }
+
+    // PIPESTATUS: one status per stage of the last foreground pipeline.
+    public int[] getPipeStatus() {
+        return pipeStatus.clone();
+    }
+
+    public void setPipeStatus(int... statuses) {
+        if (statuses != null && statuses.length > 0) {
+            this.pipeStatus = statuses.clone();
+        }
+    }
+
+    public JobTable getJobs() {
+        return jobs;
+    }
+
     public Map<String, String> getEnv() {
         return env;
     }
@@ -65,4 +140,11 @@ public class ShellContext {
         }
         return env.get(key);
     }
+
+    // Everything a parsed and resolved command line depends on besides its own text.
+    public Fingerprint fingerprint() {
+        return new Fingerprint(workspace, getEnv("PATH"), getEnv("HOME"));
+    }
+
+    public record Fingerprint(String workspace, String path, String home) {}
 }
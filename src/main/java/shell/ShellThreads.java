@@ -0,0 +1,32 @@
+package shell;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shell-wide factory for the short-lived threads behind pipeline stages, process stream pumps and
+ * {@link CommandRunner#stdoutStream}. They run as virtual threads, so a wide pipeline costs heap
+ * objects rather than one OS thread per stage and per pump. Threads are named
+ * {@code <role>:<command>#<n>} (or {@code <role>#<n>} without a command) so they can be told
+ * apart in a thread dump.
+ *
+ * <p>Setting {@code -Dshell.platformThreads=true} falls back to platform threads, for comparison.
+ */
+public final class ShellThreads {
+    private static final ThreadFactory FACTORY = Boolean.getBoolean("shell.platformThreads")
+            ? Thread.ofPlatform().daemon().factory()
+            : Thread.ofVirtual().factory();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private ShellThreads() {
+    }
+
+    // Starts task on a new thread. Like all virtual threads it never keeps the JVM alive.
+    public static Thread start(String role, Command command, Runnable task) {
+        Thread thread = FACTORY.newThread(task);
+        String name = command == null ? null : command.getName();
+        thread.setName(role + (name == null ? "" : ":" + name) + "#" + SEQUENCE.incrementAndGet());
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,67 @@
+package shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public class WaitCommand implements CommandRunner {
+    private static WaitCommand instance;
+
+    private WaitCommand() {
+    }
+
+    public static WaitCommand getInstance() {
+        if (instance == null) {
+            instance = new WaitCommand();
+        }
+        return instance;
+    }
+
+    // "wait" waits for every job and returns 0; "wait %n pid..." for the named jobs and process
+    // ids, returning the status of the last one (127 when it is unknown).
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        ShellContext context = cmd.getContext();
+        if (context == null) {
+            return;
+        }
+        JobTable jobs = context.getJobs();
+        List<String> args = cmd.getArgList();
+        try (BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            if (args == null || args.isEmpty()) {
+                for (JobTable.Job job : jobs.list()) {
+                    if (!await(jobs, job)) {
+                        return;
+                    }
+                }
+                cmd.setExitStatus(0);
+                return;
+            }
+            for (String arg : args) {
+                JobTable.Job job = arg.startsWith("%") ? jobs.find(arg) : jobs.findByPid(arg);
+                if (job == null) {
+                    stderr.println(arg.startsWith("%")
+                            ? "wait: " + arg + ": no such job"
+                            : "wait: pid " + arg + " is not a child of this shell");
+                    cmd.setExitStatus(127);
+                    continue;
+                }
+                if (!await(jobs, job)) {
+                    return;
+                }
+                cmd.setExitStatus(job.exitStatus());
+            }
+        }
+    }
+
+    private static boolean await(JobTable jobs, JobTable.Job job) {
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        jobs.remove(job);
+        return true;
+    }
+}
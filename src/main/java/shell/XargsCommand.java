@@ -0,0 +1,374 @@
+package shell;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+// xargs [-P n] [-n n] [-s n] [-0] [--group] [command [args...]]; exit statuses as in GNU xargs.
+public class XargsCommand implements CommandRunner {
+    private static final long FALLBACK_ARG_MAX = 128 * 1024;
+    private static final long HEADROOM = 2048;
+    private static final int POINTER_SIZE = 8;
+
+    private static XargsCommand instance;
+
+    private XargsCommand() {
+    }
+
+    public static XargsCommand getInstance() {
+        if (instance == null) {
+            instance = new XargsCommand();
+        }
+        return instance;
+    }
+
+    @Override
+    public void runWithStreams(Command cmd, InputStream in, OutputStream out, OutputStream err) {
+        try (BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            Options options;
+            try {
+                options = Options.parse(cmd.getArgList());
+            } catch (IllegalArgumentException e) {
+                stderr.println("xargs: " + e.getMessage());
+                cmd.setExitStatus(1);
+                return;
+            }
+            long maxBytes = options.maxBytes() > 0 ? options.maxBytes() : defaultMaxBytes(cmd.getContext());
+            long baseSize = sizeOf(options.command());
+            if (baseSize > maxBytes) {
+                stderr.println("xargs: argument line too long");
+                cmd.setExitStatus(1);
+                return;
+            }
+
+            Batches batches = new Batches(cmd.getContext(), options, shared(out), shared(err));
+            Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            try {
+                List<String> batch = new ArrayList<>();
+                long size = baseSize;
+                String arg;
+                while (!batches.notFound && (arg = nextArgument(reader, options.nulTerminated())) != null) {
+                    long argSize = sizeOf(arg);
+                    if (baseSize + argSize > maxBytes) {
+                        stderr.println("xargs: argument line too long");
+                        batches.failed = true;
+                        break;
+                    }
+                    if (!batch.isEmpty() && (size + argSize > maxBytes || batch.size() == options.maxArgs())) {
+                        batches.dispatch(batch);
+                        batch = new ArrayList<>();
+                        size = baseSize;
+                    }
+                    batch.add(arg);
+                    size += argSize;
+                }
+                // Like GNU xargs, the command runs once even when stdin has no arguments.
+                if (!batches.notFound && (!batch.isEmpty() || batches.dispatched == 0)) {
+                    batches.dispatch(batch);
+                }
+            } catch (IOException e) {
+                stderr.println("xargs: " + e.getMessage());
+                batches.failed = true;
+            } catch (InterruptedException e) {
+                batches.interrupt();
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                batches.awaitAll();
+            } catch (InterruptedException e) {
+                batches.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            cmd.setExitStatus(batches.notFound ? 127 : batches.failed ? 123 : 0);
+        }
+    }
+
+    // Runs batches on shell threads, at most options.parallelism() at a time.
+    private static final class Batches {
+        private final ShellContext context;
+        private final Options options;
+        private final OutputStream out;
+        private final OutputStream err;
+        private final Semaphore slots;
+        private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+        private int dispatched;
+        private volatile boolean failed;
+        private volatile boolean notFound;
+
+        Batches(ShellContext context, Options options, OutputStream out, OutputStream err) {
+            this.context = context;
+            this.options = options;
+            this.out = out;
+            this.err = err;
+            this.slots = new Semaphore(options.parallelism());
+        }
+
+        void dispatch(List<String> args) throws InterruptedException {
+            slots.acquire();
+            List<String> words = new ArrayList<>(options.command());
+            words.addAll(args);
+            Command command = Command.build(context, words.get(0), String.join(" ", words.subList(1, words.size())));
+            command.setArgList(new ArrayList<>(words.subList(1, words.size())));
+            dispatched++;
+            try {
+                ShellThreads.start("xargs", command, () -> {
+                    running.add(Thread.currentThread());
+                    try {
+                        int status = options.group() ? runGrouped(command) : runBatch(command, out, err);
+                        if (status == 127) {
+                            notFound = true;
+                        } else if (status != 0) {
+                            failed = true;
+                        }
+                    } finally {
+                        running.remove(Thread.currentThread());
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        private int runGrouped(Command command) {
+            ByteArrayOutputStream bufferedOut = new ByteArrayOutputStream();
+            ByteArrayOutputStream bufferedErr = new ByteArrayOutputStream();
+            int status = runBatch(command, bufferedOut, bufferedErr);
+            synchronized (this) {
+                try {
+                    bufferedOut.writeTo(out);
+                    out.flush();
+                    bufferedErr.writeTo(err);
+                    err.flush();
+                } catch (IOException e) {
+                    // The reader went away; nothing left to report to.
+                }
+            }
+            return status;
+        }
+
+        void awaitAll() throws InterruptedException {
+            slots.acquire(options.parallelism());
+            slots.release(options.parallelism());
+        }
+
+        void interrupt() {
+            for (Thread thread : running) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    // Returns the invocation's exit status; 127 when the command does not exist.
+    private static int runBatch(Command command, OutputStream out, OutputStream err) {
+        CommandRunner runner = CommandResolver.runnerFor(command);
+        if (runner == null) {
+            report(err, command.getName() + ": No such file or directory");
+            return 127;
+        }
+        try {
+            runner.runWithStreams(command, InputStream.nullInputStream(), out, err);
+            return command.getExitStatus();
+        } catch (RuntimeException e) {
+            String message = e.getMessage();
+            report(err, command.getName() + ": " + (message == null || message.isBlank() ? e : message));
+            return 1;
+        }
+    }
+
+    private static void report(OutputStream err, String message) {
+        try (BuiltinOutput stderr = BuiltinOutput.of(err)) {
+            stderr.println("xargs: " + message);
+        }
+    }
+
+    // PrintStream already locks per write; other streams (pipes, files) get one writer at a time.
+    private static OutputStream shared(OutputStream stream) {
+        if (stream instanceof PrintStream) {
+            return stream;
+        }
+        return new OutputStream() {
+            @Override
+            public synchronized void write(int b) throws IOException {
+                stream.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                stream.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                stream.flush();
+            }
+        };
+    }
+
+    // Next blank-separated argument, honouring '...', "..." and backslash like POSIX xargs, or the
+    // next NUL-terminated one with -0; null at end of input.
+    static String nextArgument(Reader reader, boolean nulTerminated) throws IOException {
+        StringBuilder arg = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (nulTerminated) {
+                if (c == 0) {
+                    return arg.toString();
+                }
+                arg.append((char) c);
+                inArg = true;
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append((char) c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = (char) c;
+                inArg = true;
+            } else if (c == '\\') {
+                int next = reader.read();
+                if (next != -1) {
+                    arg.append((char) next);
+                }
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    return arg.toString();
+                }
+            } else {
+                arg.append((char) c);
+                inArg = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IOException("unmatched " + (quote == '\'' ? "single" : "double") + " quote");
+        }
+        return inArg ? arg.toString() : null;
+    }
+
+    // Bytes an argument takes in the new process image: its UTF-8 text, the NUL and the argv pointer.
+    private static long sizeOf(String arg) {
+        return arg.getBytes(StandardCharsets.UTF_8).length + 1 + POINTER_SIZE;
+    }
+
+    private static long sizeOf(List<String> args) {
+        long size = 0;
+        for (String arg : args) {
+            size += sizeOf(arg);
+        }
+        return size;
+    }
+
+    // The limit left by the environment the invocations actually get: the shell's, not the JVM's.
+    private static long defaultMaxBytes(ShellContext context) {
+        Map<String, String> env = context != null ? context.getEnv() : System.getenv();
+        long environment = 0;
+        for (Map.Entry<String, String> entry : env.entrySet()) {
+            environment += sizeOf(entry.getKey() + "=" + entry.getValue());
+        }
+        return Math.max(FALLBACK_ARG_MAX / 2, Limits.ARG_MAX - environment - HEADROOM);
+    }
+
+    // Holder class: getconf runs once, the first time a default limit is needed.
+    private static final class Limits {
+        static final long ARG_MAX = queryArgMax();
+
+        private static long queryArgMax() {
+            try {
+                Process process = new ProcessBuilder("getconf", "ARG_MAX")
+                        .redirectErrorStream(true)
+                        .start();
+                String text = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+                if (process.waitFor() == 0) {
+                    return Long.parseLong(text);
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Fall back below.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FALLBACK_ARG_MAX;
+        }
+    }
+
+    record Options(List<String> command, int parallelism, int maxArgs, long maxBytes,
+                   boolean nulTerminated, boolean group) {
+
+        static Options parse(List<String> args) {
+            int parallelism = 1;
+            int maxArgs = Integer.MAX_VALUE;
+            long maxBytes = 0;
+            boolean nulTerminated = false;
+            boolean group = false;
+            int i = 0;
+            while (args != null && i < args.size()) {
+                String arg = args.get(i);
+                char option = arg.length() >= 2 && arg.charAt(0) == '-' ? arg.charAt(1) : 0;
+                if ("-0".equals(arg)) {
+                    nulTerminated = true;
+                } else if ("--group".equals(arg)) {
+                    group = true;
+                } else if (option == 'P' || option == 'n' || option == 's') {
+                    String value = arg.length() > 2 ? arg.substring(2) : null;
+                    if (value == null) {
+                        if (++i == args.size()) {
+                            throw new IllegalArgumentException("option requires an argument -- '" + option + "'");
+                        }
+                        value = args.get(i);
+                    }
+                    long number = parseNumber(option, value);
+                    switch (option) {
+                        // -P 0 means one invocation per available core.
+                        case 'P' -> parallelism = number == 0
+                                ? Runtime.getRuntime().availableProcessors()
+                                : (int) Math.min(number, Integer.MAX_VALUE);
+                        case 'n' -> maxArgs = (int) Math.min(Math.max(number, 1), Integer.MAX_VALUE);
+                        default -> maxBytes = Math.max(number, 1);
+                    }
+                } else if ("--".equals(arg)) {
+                    i++;
+                    break;
+                } else if (option != 0) {
+                    throw new IllegalArgumentException("invalid option -- '" + option + "'");
+                } else {
+                    break;
+                }
+                i++;
+            }
+            List<String> command = args == null || i >= args.size()
+                    ? List.of("echo")
+                    : List.copyOf(args.subList(i, args.size()));
+            return new Options(command, parallelism, maxArgs, maxBytes, nulTerminated, group);
+        }
+
+        private static long parseNumber(char option, String value) {
+            try {
+                long number = Long.parseLong(value);
+                if (number >= 0) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+            throw new IllegalArgumentException("invalid number \"" + value + "\" for -" + option + " option");
+        }
+    }
+}
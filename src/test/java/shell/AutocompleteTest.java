@@ -23,6 +23,7 @@ import org.jline.terminal.TerminalBuilder;
 public class AutocompleteTest {
     private static String uniqueCommandMatch(String token) throws Exception {
         AutoCompleter completer = new AutoCompleter("$ ");
+        completer.awaitIndex(5_000);
         return completer.uniqueCommandMatch(token);
     }
 
@@ -161,6 +162,99 @@ public class AutocompleteTest {
         assertEquals(true, output.contains("BUFFER=xyz_foo_bar_baz "));
     }
 
+    @Test
+    void pathCompletion_escapesUniqueFileInArgumentPosition(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("file one.txt"), "x");
+
+        assertEquals("echo file\\ one.txt ", completeInWorkspace(tempDir, "echo fi"));
+    }
+
+    @Test
+    void pathCompletion_escapesStdinRedirectCharacter(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("in<1"), "x");
+
+        assertEquals("cat in\\<1 ", completeInWorkspace(tempDir, "cat in"));
+    }
+
+    @Test
+    void pathCompletion_escapesBackgroundCharacter(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("a&b"), "x");
+
+        assertEquals("cat a\\&b ", completeInWorkspace(tempDir, "cat a"));
+    }
+
+    @Test
+    void pathCompletion_escapesListSeparator(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("x;y"), "x");
+
+        assertEquals("cat x\\;y ", completeInWorkspace(tempDir, "cat x"));
+    }
+
+    @Test
+    void pathCompletion_appendsSlashForDirectories(@TempDir Path tempDir) throws Exception {
+        Files.createDirectories(tempDir.resolve("subdir/inner"));
+
+        assertEquals("cat subdir/", completeInWorkspace(tempDir, "cat sub"));
+        assertEquals("cat subdir/inner/", completeInWorkspace(tempDir, "cat subdir/in"));
+    }
+
+    @Test
+    void pathCompletion_closesOpenQuote(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("file one.txt"), "x");
+
+        assertEquals("cat \"file one.txt\" ", completeInWorkspace(tempDir, "cat \"file o"));
+    }
+
+    @Test
+    void pathCompletion_extendsCommonPrefixAfterRedirect(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("report-2024.txt"), "x");
+        Files.writeString(tempDir.resolve("report-2025.txt"), "x");
+
+        assertEquals("echo hi > report-202", completeInWorkspace(tempDir, "echo hi > rep"));
+    }
+
+    @Test
+    void currentWord_tracksCommandPositionAcrossPipes() {
+        assertEquals(new AutoCompleter.CompletionWord("gr", (char) 0, true),
+                AutoCompleter.currentWord("echo a | gr", 11));
+        assertEquals(new AutoCompleter.CompletionWord("", (char) 0, false),
+                AutoCompleter.currentWord("echo a ", 7));
+        assertEquals(new AutoCompleter.CompletionWord("my dir", '\'', false),
+                AutoCompleter.currentWord("ls 'my dir", 10));
+    }
+
+    @Test
+    void directoryListingCache_reusesListingUntilMtimeChanges(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("alpha"), "x");
+        DirectoryListingCache cache = new DirectoryListingCache();
+
+        assertEquals(List.of("alpha"), cache.matches(tempDir, "al"));
+        assertEquals(List.of("alpha"), cache.matches(tempDir, "a"));
+        assertEquals(1, cache.relistCount());
+
+        Files.writeString(tempDir.resolve("alpine"), "x");
+        tempDir.toFile().setLastModified(System.currentTimeMillis() + 60_000);
+        assertEquals(List.of("alpha", "alpine"), cache.matches(tempDir, "al"));
+        assertEquals(2, cache.relistCount());
+    }
+
+    private static String completeInWorkspace(Path workspace, String line) throws Exception {
+        ShellContext context = new ShellContext(workspace.toAbsolutePath().toString());
+        AutoCompleter completer = new AutoCompleter("$ ", context);
+        Terminal terminal = TerminalBuilder.builder()
+                .system(false)
+                .dumb(true)
+                .type("dumb")
+                .streams(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream())
+                .build();
+        LineReader reader = LineReaderBuilder.builder()
+                .terminal(terminal)
+                .build();
+        reader.getBuffer().write(line);
+        TestUtils.captureStdout(() -> completer.handleTab(reader));
+        return reader.getBuffer().toString();
+    }
+
     private String runWithPath(String pathValue, String token) throws Exception {
         String javaBin = Path.of(System.getProperty("java.home"), "bin", "java").toString();
         String classpath = System.getProperty("java.class.path");
@@ -255,6 +349,7 @@ public class AutocompleteTest {
         public static void main(String[] args) {
             String token = args.length > 1 ? args[1] : "";
             AutoCompleter completer = new AutoCompleter("$ ");
+            completer.awaitIndex(5_000);
             String result = completer.uniqueCommandMatch(token);
             if (result != null) {
                 System.out.print(result);
@@ -266,6 +361,7 @@ public class AutocompleteTest {
         public static void main(String[] args) throws Exception {
             String token = args.length > 1 ? args[1] : "";
             AutoCompleter completer = new AutoCompleter("$ ");
+            completer.awaitIndex(5_000);
             completer.resetTabState();
 
             Terminal terminal = TerminalBuilder.builder()
@@ -292,6 +388,7 @@ public class AutocompleteTest {
         public static void main(String[] args) throws Exception {
             String token = args.length > 1 ? args[1] : "";
             AutoCompleter completer = new AutoCompleter("$ ");
+            completer.awaitIndex(5_000);
             completer.resetTabState();
 
             Terminal terminal = TerminalBuilder.builder()
@@ -327,6 +424,7 @@ public class AutocompleteTest {
         public static void main(String[] args) throws Exception {
             String token = args.length > 1 ? args[1] : "";
             AutoCompleter completer = new AutoCompleter("$ ");
+            completer.awaitIndex(5_000);
             completer.resetTabState();
 
             ByteArrayOutputStream output = new ByteArrayOutputStream();
@@ -0,0 +1,75 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class BuiltinOutputTest {
+
+    @Test
+    void println_batchesLinesIntoFewWrites() {
+        CountingStream sink = new CountingStream();
+        try (BuiltinOutput out = BuiltinOutput.of(sink)) {
+            for (int i = 0; i < 10_000; i++) {
+                out.printPadded(i, 5).print("  ").println("entry");
+            }
+        }
+
+        String text = sink.bytes.toString(StandardCharsets.UTF_8);
+        assertEquals(10_000 * (12 + System.lineSeparator().length()), text.length());
+        assertTrue(text.startsWith("    0  entry"));
+        assertTrue(sink.writes < 30, "writes: " + sink.writes);
+    }
+
+    @Test
+    void print_encodesMultibyteTextAcrossBufferBoundaries() {
+        CountingStream sink = new CountingStream();
+        String line = "héllo wörld ✓ 😀".repeat(1_000);
+        try (BuiltinOutput out = BuiltinOutput.of(sink)) {
+            out.print(line);
+        }
+
+        assertEquals(line, sink.bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void checkError_reportsFailedWritesAndDropsLaterOutput() {
+        CountingStream sink = new CountingStream();
+        sink.fail = true;
+        BuiltinOutput out = BuiltinOutput.of(sink);
+
+        out.println("lost");
+        out.flush();
+        out.println("also lost");
+        out.flush();
+
+        assertTrue(out.checkError());
+        assertEquals(1, sink.writes);
+    }
+
+    private static final class CountingStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int writes;
+        boolean fail;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writes++;
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            bytes.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CommandCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void evalInput_reusesCachedLine() {
+        Shell shell = new Shell(new ShellContext(tempDir.toAbsolutePath().toString()));
+        CommandCache cache = new CommandCache(8);
+        shell.setCommandCache(cache);
+
+        String output = TestUtils.captureStdout(() -> {
+            shell.evalInput("echo hi");
+            shell.evalInput("echo hi");
+        });
+
+        assertEquals("hi" + System.lineSeparator() + "hi" + System.lineSeparator(), output);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evalInput_missesAfterWorkspaceChange() throws Exception {
+        Path child = Files.createDirectory(tempDir.resolve("child"));
+        ShellContext context = new ShellContext(tempDir.toAbsolutePath().toString());
+        Shell shell = new Shell(context);
+        CommandCache cache = new CommandCache(8);
+        shell.setCommandCache(cache);
+
+        shell.evalInput("echo a > out.txt");
+        shell.evalInput("cd child");
+        shell.evalInput("echo a > out.txt");
+
+        assertEquals(3, cache.getMisses());
+        assertEquals("a" + System.lineSeparator(), Files.readString(tempDir.resolve("out.txt")));
+        assertEquals("a" + System.lineSeparator(), Files.readString(child.resolve("out.txt")));
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsed() {
+        CommandCache cache = new CommandCache(2);
+        ShellContext.Fingerprint fingerprint = new ShellContext.Fingerprint("/", "/bin", "/root");
+        CommandCache.Key first = new CommandCache.Key("first", fingerprint);
+        CommandCache.Key second = new CommandCache.Key("second", fingerprint);
+        CommandCache.Key third = new CommandCache.Key("third", fingerprint);
+        CommandCache.Entry entry = new CommandCache.Entry(CCParser.parsePipeline("echo"), List.of(), 0);
+
+        cache.put(first, entry);
+        cache.put(second, entry);
+        cache.get(first);
+        cache.put(third, entry);
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    void evalInput_doesNotCacheUnknownCommands() {
+        Shell shell = new Shell(new ShellContext(tempDir.toAbsolutePath().toString()));
+        CommandCache cache = new CommandCache(8);
+        shell.setCommandCache(cache);
+
+        TestUtils.captureStdout(() -> shell.evalInput("definitely-not-a-command-12345"));
+
+        assertEquals(0, cache.size());
+    }
+}
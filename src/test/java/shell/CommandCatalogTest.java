@@ -0,0 +1,137 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CommandCatalogTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matches_returnsSortedPrefixRangeAcrossDirectories() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        writeExecutable(first.resolve("xq_beta"));
+        writeExecutable(second.resolve("xq_alpha"));
+        writeExecutable(second.resolve("xq_beta"));
+        writeExecutable(second.resolve("xr_other"));
+        Files.writeString(second.resolve("xq_plain"), "not executable");
+        CommandCatalog catalog = new CommandCatalog();
+
+        catalog.refresh(first + File.pathSeparator + second);
+
+        assertEquals(List.of("xq_alpha", "xq_beta"), catalog.matches("xq_"));
+        assertEquals(List.of("echo"), catalog.matches("ech"));
+        assertTrue(catalog.matches("zz_nothing").isEmpty());
+    }
+
+    @Test
+    void refresh_picksUpChangedDirectoryOnly() throws Exception {
+        writeExecutable(tempDir.resolve("xq_one"));
+        CommandCatalog catalog = new CommandCatalog();
+        catalog.refresh(tempDir.toString());
+
+        writeExecutable(tempDir.resolve("xq_two"));
+        tempDir.toFile().setLastModified(System.currentTimeMillis() + 60_000);
+        catalog.refresh(tempDir.toString());
+
+        assertEquals(List.of("xq_one", "xq_two"), catalog.matches("xq_"));
+    }
+
+    @Test
+    void refresh_dropsDirectoriesRemovedFromPath() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        writeExecutable(first.resolve("xq_gone"));
+        CommandCatalog catalog = new CommandCatalog();
+        catalog.refresh(first.toString());
+
+        catalog.refresh(tempDir.resolve("empty").toString());
+
+        assertTrue(catalog.matches("xq_").isEmpty());
+    }
+
+    @Test
+    void applyDeltas_keepsNamesProvidedByAnotherDirectory() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        writeExecutable(first.resolve("xq_shared"));
+        writeExecutable(second.resolve("xq_shared"));
+        CommandCatalog catalog = new CommandCatalog();
+        catalog.refresh(first + File.pathSeparator + second);
+
+        catalog.applyDeltas(first.toString(), Map.of("xq_shared", false, "xq_new", true));
+
+        assertEquals(List.of("xq_new", "xq_shared"), catalog.matches("xq_"));
+        catalog.applyDeltas(second.toString(), Map.of("xq_shared", false));
+        assertEquals(List.of("xq_new"), catalog.matches("xq_"));
+    }
+
+    @Test
+    void refresher_picksUpExecutablesCreatedAfterStart() throws Exception {
+        CommandCatalog catalog = new CommandCatalog();
+        try (CatalogRefresher refresher = new CatalogRefresher(catalog)) {
+            refresher.watch(tempDir.toString());
+            assertTrue(refresher.awaitReady(5_000));
+            assertTrue(catalog.matches("xq_").isEmpty());
+
+            writeExecutable(tempDir.resolve("xq_watched"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (catalog.matches("xq_").isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of("xq_watched"), catalog.matches("xq_"));
+        }
+    }
+
+    @Test
+    void refresher_retargetKeepsOnlyTheNewPath() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        writeExecutable(first.resolve("xq_old"));
+        writeExecutable(second.resolve("xq_new"));
+        CommandCatalog catalog = new CommandCatalog();
+        try (CatalogRefresher refresher = new CatalogRefresher(catalog)) {
+            refresher.watch(first.toString());
+            refresher.watch(second.toString());
+            assertTrue(refresher.awaitReady(5_000));
+
+            // A late update from the replaced watcher must not bring xq_old back.
+            Thread.sleep(100);
+            assertEquals(List.of("xq_new"), catalog.matches("xq_"));
+        }
+    }
+
+    @Test
+    void completer_doesNotIndexWithoutALineReader() throws Exception {
+        writeExecutable(tempDir.resolve("xq_unindexed"));
+        ShellContext context = new ShellContext(tempDir.toString(), null, Map.of("PATH", tempDir.toString()));
+        AutoCompleter completer = new AutoCompleter("$ ", context);
+
+        // Tab answers from the snapshot at once: builtins only until indexing starts.
+        assertEquals(null, completer.uniqueCommandMatch("xq_"));
+        assertTrue(completer.awaitIndex(5_000));
+        assertEquals("xq_unindexed", completer.uniqueCommandMatch("xq_"));
+    }
+
+    private Path writeExecutable(Path path) throws Exception {
+        Files.writeString(path, "#!/bin/sh\necho ok\n");
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+        } catch (UnsupportedOperationException e) {
+            path.toFile().setExecutable(true);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,83 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CommandListTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private ShellContext context;
+    private Shell shell;
+
+    @BeforeEach
+    void resetWorkspace() {
+        context = new ShellContext(System.getProperty("user.dir"));
+        shell = new Shell(context);
+    }
+
+    @Test
+    void sequence_runsEveryPipeline() {
+        String output = TestUtils.captureStdout(() -> shell.evalInput("echo a; /bin/echo b ;echo c"));
+
+        assertEquals("a" + NL + "b" + NL + "c" + NL, output);
+    }
+
+    @Test
+    void andOr_shortCircuitsOnStatus() {
+        String output = TestUtils.captureStdout(
+                () -> shell.evalInput("false && echo skipped || echo fallback && echo after"));
+
+        assertEquals("fallback" + NL + "after" + NL, output);
+    }
+
+    @Test
+    void exitStatus_isRecordedForExternalsAndBuiltins() {
+        shell.evalInput("sh -c 'exit 3'");
+        assertEquals(3, context.getExitStatus());
+
+        TestUtils.captureStdout(() -> shell.evalInput("cd /no/such/dir"));
+        assertEquals(1, context.getExitStatus());
+
+        TestUtils.captureStdout(() -> shell.evalInput("no-such-command-xyz"));
+        assertEquals(127, context.getExitStatus());
+    }
+
+    @Test
+    void pipeStatus_recordsEveryStage() {
+        TestUtils.captureStdout(() -> shell.evalInput("echo x | sh -c 'cat; exit 2' | /bin/cat"));
+
+        assertArrayEquals(new int[] {0, 2, 0}, context.getPipeStatus());
+        assertEquals(0, context.getExitStatus());
+    }
+
+    @Test
+    void statusExpansion_seesThePreviousPipeline() {
+        String output = TestUtils.captureStdout(
+                () -> shell.evalInput("sh -c 'exit 4' || echo $?; false | true; echo ${PIPESTATUS[@]}"));
+
+        assertEquals("4" + NL + "1 0" + NL, output);
+    }
+
+    @Test
+    void syntaxError_runsNothing() {
+        String output = TestUtils.captureStdout(() -> TestUtils.captureStderr(
+                () -> shell.evalInput("echo a; && echo b")));
+
+        assertEquals("", output);
+        assertEquals(2, context.getExitStatus());
+    }
+
+    @Test
+    void cachedLines_stillRecordStatus() {
+        shell.setCommandCache(new CommandCache());
+        shell.evalInput("false");
+        assertEquals(1, context.getExitStatus());
+        shell.evalInput("true");
+        shell.evalInput("false");
+        assertEquals(1, context.getExitStatus());
+    }
+}
@@ -1,6 +1,7 @@
 package shell;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -43,4 +44,23 @@ public class CommandRunnerTest {
 
         assertEquals("boom", output);
     }
+
+    @Test
+    void stdout_runsProducerOnNamedVirtualThread() throws Exception {
+        CommandRunner runner = new CommandRunner() {
+            @Override
+            public void runWithStreams(Command cmd, InputStream in, java.io.OutputStream out, java.io.OutputStream err) {
+                Thread current = Thread.currentThread();
+                CommandRunner.toPrintStream(out).print(current.isVirtual() + " " + current.getName());
+            }
+        };
+        Command source = Command.build("echo", "");
+
+        String output;
+        try (InputStream in = runner.stdoutStream(source)) {
+            output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertTrue(output.startsWith("true stdout-stream:echo#"), output);
+    }
 }
@@ -43,6 +43,28 @@ public class ExternalCommandTest {
         assertEquals("boom" + System.lineSeparator(), capturedErr.get());
     }
 
+    @Test
+    void run_inheritsRegisteredProcessStdoutInsteadOfPumping() throws Exception {
+        Assumptions.assumeTrue(CommandResolver.findExecutable("sh") != null);
+        Command command = Command.build(context, "sh", "");
+        command.setArgList(List.of("-c", "echo inherited"));
+        Path descriptor = tempDir.resolve("stdout.txt");
+
+        // The child gets the registered descriptor (a file here, not the test runner's stdout),
+        // so nothing reaches the Java stream.
+        String output = TestUtils.captureStdout(() -> {
+            ExternalCommand.useProcessStdout(System.out, ProcessBuilder.Redirect.to(descriptor.toFile()));
+            try {
+                ExternalCommand.getInstance().run(command);
+            } finally {
+                ExternalCommand.useProcessStdio(null, null);
+            }
+        });
+
+        assertEquals("", output);
+        assertEquals("inherited" + System.lineSeparator(), Files.readString(descriptor));
+    }
+
     @Test
     void run_allowsNonZeroExitCodes() {
         Assumptions.assumeTrue(CommandResolver.findExecutable("sh") != null);
@@ -0,0 +1,130 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HashCommandTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void lookup_countsHitsAndKeepsPath() throws Exception {
+        Path exec = writeExecutable(tempDir.resolve("tool"));
+        ExecutableHash hash = new ExecutableHash();
+
+        assertEquals(exec.toString(), hash.lookup(tempDir.toString(), "tool"));
+        assertEquals(exec.toString(), hash.lookup(tempDir.toString(), "tool"));
+
+        assertEquals(List.of(new ExecutableHash.HashedCommand("tool", exec.toString(), 2)), hash.list());
+    }
+
+    @Test
+    void lookup_dropsEntriesWhenDirectoryChanges() throws Exception {
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        Path late = writeExecutable(second.resolve("tool"));
+        String pathEnv = first + File.pathSeparator + second;
+        ExecutableHash hash = new ExecutableHash(0);
+
+        assertEquals(late.toString(), hash.lookup(pathEnv, "tool"));
+        long generation = hash.generation(pathEnv);
+        Path early = writeExecutable(first.resolve("tool"));
+        Assumptions.assumeTrue(first.toFile().lastModified() != 0);
+        first.toFile().setLastModified(first.toFile().lastModified() + 2000);
+
+        assertEquals(early.toString(), hash.lookup(pathEnv, "tool"));
+        assertNotEquals(generation, hash.generation(pathEnv));
+    }
+
+    @Test
+    void lookup_resetsWhenPathChanges() throws Exception {
+        Path exec = writeExecutable(tempDir.resolve("tool"));
+        ExecutableHash hash = new ExecutableHash();
+
+        hash.lookup(tempDir.toString(), "tool");
+        hash.lookup(tempDir + File.pathSeparator + "/nonexistent", "other");
+
+        assertTrue(hash.list().isEmpty());
+        assertEquals(exec.toString(), hash.lookup(tempDir.toString(), "tool"));
+    }
+
+    @Test
+    void lookup_remembersMissesUntilDirectoryChanges() throws Exception {
+        ExecutableHash hash = new ExecutableHash(0, Long.MAX_VALUE / 4, 8);
+
+        assertEquals(null, hash.lookup(tempDir.toString(), "late_tool"));
+        Path exec = writeExecutable(tempDir.resolve("late_tool"));
+        tempDir.toFile().setLastModified(System.currentTimeMillis() + 60_000);
+
+        assertEquals(exec.toString(), hash.lookup(tempDir.toString(), "late_tool"));
+    }
+
+    @Test
+    void lookup_servesMissFromCacheWithinTtl() throws Exception {
+        ExecutableHash hash = new ExecutableHash(Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, 8);
+
+        assertEquals(null, hash.lookup(tempDir.toString(), "late_tool"));
+        writeExecutable(tempDir.resolve("late_tool"));
+
+        assertEquals(null, hash.lookup(tempDir.toString(), "late_tool"));
+        hash.clear();
+        assertEquals(tempDir.resolve("late_tool").toString(), hash.lookup(tempDir.toString(), "late_tool"));
+    }
+
+    @Test
+    void lookup_boundsNegativeEntries() {
+        ExecutableHash hash = new ExecutableHash(Long.MAX_VALUE / 4, Long.MAX_VALUE / 4, 4);
+
+        for (int i = 0; i < 100; i++) {
+            hash.lookup(tempDir.toString(), "missing_" + i);
+        }
+
+        assertEquals(4, hash.missCount());
+    }
+
+    @Test
+    void run_listsAndClearsTable() throws Exception {
+        Path exec = writeExecutable(tempDir.resolve("hashed_tool"));
+        ShellContext context = new ShellContext(tempDir.toString(), null, Map.of("PATH", tempDir.toString()));
+        Shell shell = new Shell(context);
+
+        String output = TestUtils.captureStdout(() -> {
+            shell.evalInput("hash -r");
+            shell.evalInput("hash");
+            shell.evalInput("hash hashed_tool");
+            shell.evalInput("hash");
+            shell.evalInput("hash -r");
+            shell.evalInput("hash");
+        });
+
+        String expected = String.join(System.lineSeparator(),
+                "hash: hash table empty",
+                "hits\tcommand",
+                "   1\t" + exec,
+                "hash: hash table empty",
+                "");
+        assertEquals(expected, output);
+    }
+
+    private Path writeExecutable(Path path) throws Exception {
+        Files.writeString(path, "#!/bin/sh\necho ok\n");
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+        } catch (UnsupportedOperationException e) {
+            path.toFile().setExecutable(true);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,156 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HistoryBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void add_dropsOldestWhenFull() {
+        HistoryBuffer buffer = new HistoryBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add("cmd" + i);
+        }
+
+        assertEquals(List.of("cmd3", "cmd4", "cmd5"), buffer);
+        assertEquals(2, buffer.firstIndex());
+        assertEquals(5, buffer.total());
+    }
+
+    @Test
+    void add_growsPastInitialSlotsUpToCapacity() {
+        HistoryBuffer buffer = new HistoryBuffer(40);
+        for (int i = 0; i < 50; i++) {
+            buffer.add(Integer.toString(i));
+        }
+
+        assertEquals(40, buffer.size());
+        assertEquals("10", buffer.get(0));
+        assertEquals("49", buffer.get(39));
+    }
+
+    @Test
+    void setCapacity_shrinksFromTheFront() {
+        HistoryBuffer buffer = new HistoryBuffer(HistoryBuffer.UNLIMITED);
+        for (int i = 0; i < 20; i++) {
+            buffer.add(Integer.toString(i));
+        }
+
+        buffer.setCapacity(2);
+        buffer.add("20");
+
+        assertEquals(List.of("19", "20"), buffer);
+        assertEquals(19, buffer.firstIndex());
+    }
+
+    @Test
+    void zeroCapacity_keepsNothingButCounts() {
+        HistoryBuffer buffer = new HistoryBuffer(0);
+        buffer.add("ls");
+
+        assertEquals(0, buffer.size());
+        assertEquals(1, buffer.total());
+    }
+
+    @Test
+    void addLoaded_keepsFileLinesInFrontAndEvictsThemFirst() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "one\ntwo\nthree\nfour\n");
+        HistoryBuffer buffer = new HistoryBuffer(3);
+
+        buffer.addLoaded(HistoryFile.readTail(file, 10));
+        assertEquals(List.of("two", "three", "four"), buffer);
+        assertEquals(1, buffer.firstIndex());
+
+        buffer.add("five");
+        assertEquals(List.of("three", "four", "five"), buffer);
+        assertEquals(5, buffer.total());
+
+        buffer.setCapacity(1);
+        assertEquals(List.of("five"), buffer);
+
+        buffer.addLoaded(HistoryFile.readTail(file, 1));
+        assertEquals(List.of("four"), buffer);
+        assertEquals(6, buffer.total());
+    }
+
+    @Test
+    void pageIn_readsOlderFileLinesOnDemand() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "one\ntwo\n\nthree\nfour\n");
+        HistoryBuffer buffer = new HistoryBuffer(HistoryBuffer.UNLIMITED);
+
+        buffer.addLoaded(HistoryFile.readTail(file, 1));
+        buffer.add("five");
+        assertEquals(List.of("four", "five"), buffer);
+        assertEquals(3, buffer.older());
+        assertEquals(4, buffer.number(0));
+        assertEquals(2, buffer.total());
+
+        // Paging in adds in front, so the indexes of later entries stay put.
+        assertEquals(2, buffer.pageIn(2));
+        assertEquals(List.of("two", "three", "four", "five"), buffer);
+        assertEquals(2, buffer.number(0));
+        assertEquals(2, buffer.total());
+
+        assertEquals(1, buffer.pageIn(10));
+        assertEquals(0, buffer.older());
+        assertEquals(1, buffer.number(0));
+        assertEquals(List.of("one", "two", "three", "four", "five"), buffer);
+    }
+
+    @Test
+    void eraseDuplicates_keepsOnlyTheNewestCopy() {
+        HistoryBuffer buffer = new HistoryBuffer(HistoryBuffer.UNLIMITED);
+        for (String entry : List.of("ls", "pwd", "ls", "cd", "pwd")) {
+            buffer.add(entry);
+        }
+
+        buffer.setEraseDuplicates(true);
+        assertEquals(List.of("ls", "cd", "pwd"), buffer);
+
+        assertEquals(0, buffer.erase("ls"));
+        assertEquals(-1, buffer.erase("ls"));
+        buffer.add("cd");
+        buffer.add("ls");
+        assertEquals(List.of("pwd", "cd", "ls"), buffer);
+    }
+
+    @Test
+    void eraseDuplicates_staysConsistentAcrossWraparoundAndGrowth() {
+        HistoryBuffer buffer = new HistoryBuffer(20);
+        buffer.setEraseDuplicates(true);
+        for (int i = 0; i < 100; i++) {
+            buffer.add("cmd" + (i % 25));
+            buffer.add("cmd" + (i % 7));
+        }
+
+        assertEquals(20, buffer.size());
+        assertEquals(20, new HashSet<>(buffer).size());
+        assertEquals("cmd1", buffer.get(19));
+        assertEquals("cmd24", buffer.get(18));
+    }
+
+    @Test
+    void eraseDuplicates_appliesToLoadedLines() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "ls\npwd\nls\n");
+        HistoryBuffer buffer = new HistoryBuffer();
+        buffer.setEraseDuplicates(true);
+
+        buffer.addLoaded(HistoryFile.readTail(file, 10));
+        buffer.add("pwd");
+
+        assertEquals(List.of("ls", "pwd"), buffer);
+    }
+}
@@ -1,9 +1,13 @@
 package shell;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -111,4 +115,185 @@ public class HistoryCommandTest {
                 "");
         assertEquals(expected, content);
     }
+
+    @Test
+    void history_keepsNumberingAndAppendBookmarkAcrossWraparound(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTSIZE", "3", "HISTFILESIZE", "-1"));
+        Shell bounded = new Shell(context);
+        HistoryCommand.initializeFromEnv(context);
+
+        TestUtils.captureStdout(() -> bounded.evalInput("echo one"));
+        TestUtils.captureStdout(() -> bounded.evalInput("history -a " + historyFile));
+        TestUtils.captureStdout(() -> bounded.evalInput("echo two"));
+        TestUtils.captureStdout(() -> bounded.evalInput("echo three"));
+        String output = TestUtils.captureStdout(() -> bounded.evalInput("history"));
+
+        assertEquals(String.join(System.lineSeparator(),
+                "    3  echo two",
+                "    4  echo three",
+                "    5  history",
+                ""), output);
+        // "echo two" wrapped out before it was appended; the bookmark resumes at the oldest kept entry.
+        TestUtils.captureStdout(() -> bounded.evalInput("history -a " + historyFile));
+        assertEquals(List.of("echo one", "history -a " + historyFile, "echo three", "history",
+                "history -a " + historyFile), Files.readAllLines(historyFile));
+    }
+
+    @Test
+    void initializeFromEnv_trimsFileToHistFileSize(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        Files.write(historyFile, List.of("a", "b", "c", "d", "e"));
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTSIZE", "4", "HISTFILESIZE", "2", "HISTFILE", historyFile.toString()));
+
+        HistoryCommand.initializeFromEnv(context);
+
+        assertEquals(List.of("b", "c", "d", "e"), context.getHistory());
+        assertEquals(List.of("d", "e"), Files.readAllLines(historyFile));
+    }
+
+    @Test
+    void initializeFromEnv_leavesFileAloneWithoutHistFileSize(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            lines.add("echo " + i);
+        }
+        Files.write(historyFile, lines);
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTFILE", historyFile.toString()));
+
+        HistoryCommand.initializeFromEnv(context);
+        HistoryCommand.writeOnExit(context);
+
+        assertEquals(HistoryBuffer.DEFAULT_CAPACITY, context.getHistory().size());
+        assertEquals(lines, Files.readAllLines(historyFile));
+    }
+
+    @Test
+    void initializeFromEnv_pagesInOlderLinesWhenListed(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 3 * HistoryFile.PAGE_LINES; i++) {
+            lines.add("echo " + i);
+        }
+        Files.write(historyFile, lines);
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTSIZE", "-1", "HISTFILE", historyFile.toString()));
+        context.setHistoryEnabled(false);
+        Shell unlimited = new Shell(context);
+
+        HistoryCommand.initializeFromEnv(context);
+        assertEquals(HistoryFile.PAGE_LINES, context.getHistory().size());
+
+        int total = lines.size();
+        String output = TestUtils.captureStdout(() -> unlimited.evalInput("history 2"));
+        assertEquals(String.format("%5d  echo %d%n%5d  echo %d%n", total - 1, total - 1, total, total), output);
+        assertEquals(HistoryFile.PAGE_LINES, context.getHistory().size());
+
+        output = TestUtils.captureStdout(() -> unlimited.evalInput("history"));
+        assertEquals(total, output.split(System.lineSeparator()).length);
+        assertEquals("    1  echo 1", output.split(System.lineSeparator())[0]);
+        HistoryCommand.clearHistory(context);
+    }
+
+    @Test
+    void record_appendsToHistFileInTheBackground(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        Files.write(historyFile, List.of("echo old"));
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTFILE", historyFile.toString()));
+        Shell persisted = new Shell(context);
+        HistoryCommand.initializeFromEnv(context);
+
+        TestUtils.captureStdout(() -> persisted.evalInput("echo one"));
+        TestUtils.captureStdout(() -> persisted.evalInput("echo two"));
+
+        // Written without any "history -a" or exit, within the flush interval.
+        List<String> expected = List.of("echo old", "echo one", "echo two");
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!Files.readAllLines(historyFile).equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, Files.readAllLines(historyFile));
+
+        // Nothing is appended twice on exit.
+        HistoryCommand.writeOnExit(context);
+        assertEquals(expected, Files.readAllLines(historyFile));
+        assertNull(context.getHistoryWriter());
+    }
+
+    @Test
+    void historyA_appendsToAnotherFileWhileHistFileIsSet(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        Path other = tempDir.resolve("other.log");
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTFILE", historyFile.toString()));
+        Shell persisted = new Shell(context);
+        HistoryCommand.initializeFromEnv(context);
+
+        TestUtils.captureStdout(() -> persisted.evalInput("echo a"));
+        TestUtils.captureStdout(() -> persisted.evalInput("history -a " + other));
+
+        assertEquals(List.of("echo a", "history -a " + other), Files.readAllLines(other));
+        HistoryCommand.writeOnExit(context);
+        assertEquals(List.of("echo a", "history -a " + other), Files.readAllLines(historyFile));
+    }
+
+    @Test
+    void historyN_mergesOtherSessionsCommands(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        Map<String, String> env = Map.of("HISTFILE", historyFile.toString());
+        ShellContext first = new ShellContext(tempDir.toString(), null, env);
+        ShellContext second = new ShellContext(tempDir.toString(), null, env);
+        HistoryCommand.initializeFromEnv(first);
+        HistoryCommand.initializeFromEnv(second);
+        Shell firstShell = new Shell(first);
+        Shell secondShell = new Shell(second);
+
+        TestUtils.captureStdout(() -> firstShell.evalInput("echo from first"));
+        TestUtils.captureStdout(() -> secondShell.evalInput("echo from second"));
+        TestUtils.captureStdout(() -> firstShell.evalInput("history -a " + historyFile));
+        TestUtils.captureStdout(() -> secondShell.evalInput("history -n"));
+
+        assertEquals(List.of("echo from second", "history -n", "echo from first", "history -a " + historyFile),
+                second.getHistory());
+        HistoryCommand.writeOnExit(first);
+        HistoryCommand.writeOnExit(second);
+        // Merged lines are not written back.
+        assertEquals(4, Files.readAllLines(historyFile).size());
+    }
+
+    @Test
+    void record_honoursHistControl(@TempDir Path tempDir) {
+        ShellContext context = new ShellContext(tempDir.toString(), null,
+                Map.of("HISTCONTROL", "ignoreboth:erasedups"));
+
+        HistoryCommand.record(context, "echo a");
+        HistoryCommand.record(context, " echo secret");
+        HistoryCommand.record(context, "echo b");
+        HistoryCommand.record(context, "echo b");
+        HistoryCommand.record(context, "echo a");
+
+        assertEquals(List.of("echo b", "echo a"), context.getHistory());
+    }
+
+    @Test
+    void record_erasedupsMovesAppendBookmark(@TempDir Path tempDir) throws Exception {
+        Path historyFile = tempDir.resolve("history.log");
+        ShellContext context = new ShellContext(tempDir.toString(), null, Map.of("HISTCONTROL", "erasedups"));
+        Shell deduped = new Shell(context);
+
+        TestUtils.captureStdout(() -> deduped.evalInput("echo one"));
+        TestUtils.captureStdout(() -> deduped.evalInput("history -a " + historyFile));
+        TestUtils.captureStdout(() -> deduped.evalInput("echo one"));
+        TestUtils.captureStdout(() -> deduped.evalInput("history -a " + historyFile));
+
+        // Both earlier copies were erased after being appended, so the second -a writes both again.
+        assertEquals(List.of("echo one", "history -a " + historyFile), context.getHistory());
+        assertEquals(List.of("echo one", "history -a " + historyFile, "echo one", "history -a " + historyFile),
+                Files.readAllLines(historyFile));
+    }
 }
@@ -0,0 +1,94 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HistoryFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compact_keepsTailAcrossBlocks() throws Exception {
+        Path file = tempDir.resolve("history");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            lines.add("echo line " + i);
+        }
+        Files.write(file, lines);
+
+        assertTrue(HistoryFile.compact(file, 3));
+
+        assertEquals(List.of("echo line 19997", "echo line 19998", "echo line 19999"), Files.readAllLines(file));
+    }
+
+    @Test
+    void compact_handlesMissingTrailingNewline() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "a\nb\nc");
+
+        assertTrue(HistoryFile.compact(file, 2));
+
+        assertEquals("b\nc", Files.readString(file));
+    }
+
+    @Test
+    void compact_leavesShortFileAlone() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "a\nb\n");
+
+        assertFalse(HistoryFile.compact(file, 2));
+        assertFalse(HistoryFile.compact(file, -1));
+
+        assertEquals("a\nb\n", Files.readString(file));
+    }
+
+    @Test
+    void readTail_returnsLastLinesAcrossBlocks() throws Exception {
+        Path file = tempDir.resolve("history");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            lines.add("echo line " + i);
+        }
+        Files.write(file, lines);
+
+        HistoryFile.Lines tail = HistoryFile.readTail(file, 3);
+
+        assertEquals(3, tail.size());
+        assertEquals("echo line 19997", tail.get(0));
+        assertEquals("echo line 19999", tail.get(2));
+        assertEquals(20_000, HistoryFile.readTail(file, -1).size());
+    }
+
+    @Test
+    void readTail_skipsBlankLinesAndStripsCarriageReturns() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "ls\r\n\n   \npwd\r\necho \u00e9t\u00e9");
+
+        HistoryFile.Lines tail = HistoryFile.readTail(file, 10);
+
+        assertEquals(3, tail.size());
+        assertEquals("ls", tail.get(0));
+        assertEquals("pwd", tail.get(1));
+        assertEquals("echo \u00e9t\u00e9", tail.get(2));
+    }
+
+    @Test
+    void readTail_handlesMissingAndEmptyFiles() throws Exception {
+        Path file = tempDir.resolve("history");
+        assertEquals(0, HistoryFile.readTail(file, 10).size());
+
+        Files.writeString(file, "\n\n");
+        assertEquals(0, HistoryFile.readTail(file, 10).size());
+        assertEquals(0, HistoryFile.readTail(file, 0).size());
+    }
+}
@@ -0,0 +1,126 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HistoryTailTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readNew_returnsOnlyLinesAppendedByOthersSinceLastRead() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "old\n");
+        HistoryTail tail = HistoryTail.atEnd(file);
+
+        try (HistoryFile.Appender mine = new HistoryFile.Appender(file, tail);
+             HistoryFile.Appender theirs = new HistoryFile.Appender(file, null)) {
+            theirs.append("other one\n");
+            mine.append("mine\n");
+            theirs.append("other two\n");
+        }
+
+        assertEquals(List.of("other one", "other two"), tail.readNew());
+        assertEquals(List.of(), tail.readNew());
+    }
+
+    @Test
+    void readNew_waitsForTheNewlineOfAPartialLine() throws Exception {
+        Path file = tempDir.resolve("history");
+        HistoryTail tail = HistoryTail.atStart(file);
+        Files.writeString(file, "ls\npw");
+
+        assertEquals(List.of("ls"), tail.readNew());
+
+        Files.writeString(file, "d\n", StandardOpenOption.APPEND);
+        assertEquals(List.of("pwd"), tail.readNew());
+    }
+
+    @Test
+    void readNew_resumesAfterTheLastSeenLineOfACompactedFile() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "a\nb\nc\n");
+        HistoryTail tail = HistoryTail.atEnd(file);
+
+        try (HistoryFile.Appender theirs = new HistoryFile.Appender(file, null)) {
+            theirs.append("d\n");
+            HistoryFile.compact(file, 2);
+            theirs.append("e\n");
+        }
+
+        assertEquals(List.of("c", "d", "e"), Files.readAllLines(file));
+        assertEquals(List.of("d", "e"), tail.readNew());
+        assertEquals(List.of(), tail.readNew());
+    }
+
+    @Test
+    void readNew_skipsOwnLinesAcrossACompaction() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "a\nb\n");
+        HistoryTail tail = HistoryTail.atEnd(file);
+
+        try (HistoryFile.Appender mine = new HistoryFile.Appender(file, tail);
+             HistoryFile.Appender theirs = new HistoryFile.Appender(file, null)) {
+            mine.append("mine one\n");
+            theirs.append("other one\n");
+            HistoryFile.compact(file, 1);
+            mine.append("mine two\n");
+            theirs.append("other two\n");
+        }
+
+        assertEquals(List.of("other one", "other two"), tail.readNew());
+    }
+
+    @Test
+    void readNew_rereadsAFileRewrittenInPlace() throws Exception {
+        Path file = tempDir.resolve("history");
+        Files.writeString(file, "a\nb\n");
+        HistoryTail tail = HistoryTail.atEnd(file);
+
+        HistoryFile.overwrite(file, "x\ny\nz\n");
+
+        assertEquals(List.of("x", "y", "z"), tail.readNew());
+    }
+
+    @Test
+    void append_keepsConcurrentWritersLinesWhole() throws Exception {
+        Path file = tempDir.resolve("history");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int session = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try (HistoryFile.Appender appender = new HistoryFile.Appender(file, null)) {
+                    for (int i = 0; i < 200; i++) {
+                        appender.append("session " + session + " command " + i + "\n");
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1600, lines.size());
+        Set<String> unique = new HashSet<>(lines);
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 200; i++) {
+                unique.remove("session " + t + " command " + i);
+            }
+        }
+        assertEquals(Set.of(), unique);
+    }
+}
@@ -0,0 +1,52 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HistoryWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sync_writesEveryOfferedEntryInOrder() throws Exception {
+        Path file = tempDir.resolve("history");
+        HistoryWriter writer = HistoryWriter.start(file, null);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String entry = "echo " + i;
+            assertTrue(writer.offer(entry));
+            expected.add(entry);
+        }
+
+        writer.sync();
+
+        assertEquals(expected, Files.readAllLines(file));
+        writer.close();
+    }
+
+    @Test
+    void compact_keepsAppendingToTheReplacedFile() throws Exception {
+        Path file = tempDir.resolve("history");
+        HistoryWriter writer = HistoryWriter.start(file, null);
+        writer.offer("a");
+        writer.offer("b");
+        writer.offer("c");
+
+        writer.compact(2);
+        writer.offer("d");
+        writer.close();
+
+        assertEquals(List.of("b", "c", "d"), Files.readAllLines(file));
+        assertFalse(writer.offer("e"));
+    }
+}
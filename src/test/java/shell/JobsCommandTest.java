@@ -0,0 +1,100 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JobsCommandTest {
+
+    private ShellContext context;
+    private Shell shell;
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void resetWorkspace() {
+        context = new ShellContext(tempDir.toString());
+        shell = new Shell(context);
+    }
+
+    @Test
+    void background_reportsJobAndWaitCollectsIt() throws Exception {
+        Path out = tempDir.resolve("out.txt");
+        String started = TestUtils.captureStderr(() -> shell.evalInput("/bin/echo hello > " + out + " &"));
+
+        assertTrue(started.matches("\\[1\\] \\d+" + System.lineSeparator()), started);
+        shell.evalInput("wait");
+        assertEquals("hello" + System.lineSeparator(), Files.readString(out));
+        assertTrue(context.getJobs().isEmpty());
+    }
+
+    @Test
+    void jobs_listsRunningJobThenFgWaitsForIt() {
+        TestUtils.captureStderr(() -> shell.evalInput("sleep 1 &"));
+
+        String listing = TestUtils.captureStdout(() -> shell.evalInput("jobs"));
+        assertEquals("[1]+  Running                 sleep 1 &" + System.lineSeparator(), listing);
+
+        String resumed = TestUtils.captureStdout(() -> shell.evalInput("fg %1"));
+        assertEquals("sleep 1" + System.lineSeparator(), resumed);
+        assertTrue(context.getJobs().isEmpty());
+    }
+
+    @Test
+    void background_runsNextPipelineOnSameLine() {
+        String output = TestUtils.captureStdout(() -> TestUtils.captureStderr(
+                () -> shell.evalInput("sleep 1 & echo next")));
+
+        assertEquals("next" + System.lineSeparator(), output);
+        assertEquals(1, context.getJobs().list().size());
+        shell.evalInput("wait");
+    }
+
+    @Test
+    void fg_reportsMissingJob() {
+        String error = TestUtils.captureStderr(() -> shell.evalInput("fg %3"));
+
+        assertEquals("fg: %3: no such job" + System.lineSeparator(), error);
+    }
+
+    @Test
+    void bg_reportsRunningJob() {
+        TestUtils.captureStderr(() -> shell.evalInput("sleep 1 &"));
+
+        String error = TestUtils.captureStderr(() -> shell.evalInput("bg"));
+        assertEquals("bg: job 1 already in background" + System.lineSeparator(), error);
+        shell.evalInput("wait %1");
+    }
+
+    @Test
+    void background_builtinLedJobReportsWithoutWaiting() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            String started = TestUtils.captureStderr(() -> shell.evalInput("wait &"));
+
+            assertEquals("[1]" + System.lineSeparator(), started);
+            shell.evalInput("wait");
+            assertTrue(context.getJobs().isEmpty());
+        });
+    }
+
+    @Test
+    void background_runsInACopyOfTheContext() throws Exception {
+        Path sub = Files.createDirectory(tempDir.resolve("sub"));
+        Path out = tempDir.resolve("pwd.txt");
+
+        TestUtils.captureStderr(() -> shell.evalInput("cd " + sub + " && pwd > " + out + " && false &"));
+        shell.evalInput("wait");
+
+        assertEquals(sub.toString() + System.lineSeparator(), Files.readString(out));
+        assertEquals(tempDir.toString(), context.getWorkspace());
+        assertEquals(0, context.getExitStatus());
+    }
+}
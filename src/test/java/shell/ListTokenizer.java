@@ -0,0 +1,185 @@
+package shell;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Original list-building tokenizer, kept as the reference CCParser.tokenizeSpans is checked and
+// benchmarked against. TokenType ordinals match CCParser's KIND_ constants.
+final class ListTokenizer {
+    private ListTokenizer() {
+    }
+
+    enum TokenType {
+        WORD,
+        PIPE,
+        REDIRECT_STDOUT,
+        REDIRECT_STDOUT_APPEND,
+        REDIRECT_STDERR,
+        REDIRECT_STDERR_APPEND,
+        REDIRECT_STDIN,
+        REDIRECT_HERE_STRING,
+        BACKGROUND,
+        SEQUENCE,
+        AND,
+        OR
+    }
+
+    record Token(TokenType type, String text) {}
+
+    static List<Token> tokenize(String inputString) {
+        List<Token> tokens = new ArrayList<>();
+        if (inputString == null || inputString.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean inSingleQuotes = false;
+        boolean inDoubleQuotes = false;
+        boolean tokenStarted = false;
+
+        for (int i = 0; i < inputString.length(); i++) {
+            char ch = inputString.charAt(i);
+
+            if (!inSingleQuotes && !inDoubleQuotes) {
+                if (ch == '\\') {
+                    if (i + 1 < inputString.length()) {
+                        current.append(inputString.charAt(i + 1));
+                        tokenStarted = true;
+                        i++;
+                    } else {
+                        current.append(ch);
+                        tokenStarted = true;
+                    }
+                    continue;
+                }
+
+                if (ch == '|' || ch == '&') {
+                    if (tokenStarted) {
+                        tokens.add(new Token(TokenType.WORD, current.toString()));
+                        current.setLength(0);
+                        tokenStarted = false;
+                    }
+                    boolean doubled = i + 1 < inputString.length() && inputString.charAt(i + 1) == ch;
+                    if (ch == '|') {
+                        tokens.add(new Token(doubled ? TokenType.OR : TokenType.PIPE, null));
+                    } else {
+                        tokens.add(new Token(doubled ? TokenType.AND : TokenType.BACKGROUND, null));
+                    }
+                    if (doubled) {
+                        i++;
+                    }
+                    continue;
+                }
+
+                if (ch == ';') {
+                    if (tokenStarted) {
+                        tokens.add(new Token(TokenType.WORD, current.toString()));
+                        current.setLength(0);
+                        tokenStarted = false;
+                    }
+                    tokens.add(new Token(TokenType.SEQUENCE, null));
+                    continue;
+                }
+
+                if ((ch == '1' || ch == '2')
+                        && i + 1 < inputString.length()
+                        && inputString.charAt(i + 1) == '>') {
+                    if (tokenStarted) {
+                        tokens.add(new Token(TokenType.WORD, current.toString()));
+                        current.setLength(0);
+                        tokenStarted = false;
+                    }
+                    boolean append = i + 2 < inputString.length() && inputString.charAt(i + 2) == '>';
+                    if (ch == '1') {
+                        tokens.add(new Token(append
+                                ? TokenType.REDIRECT_STDOUT_APPEND
+                                : TokenType.REDIRECT_STDOUT, null));
+                    } else {
+                        tokens.add(new Token(append
+                                ? TokenType.REDIRECT_STDERR_APPEND
+                                : TokenType.REDIRECT_STDERR, null));
+                    }
+                    i += append ? 2 : 1;
+                    continue;
+                }
+
+                if (ch == '>') {
+                    if (tokenStarted) {
+                        tokens.add(new Token(TokenType.WORD, current.toString()));
+                        current.setLength(0);
+                        tokenStarted = false;
+                    }
+                    boolean append = i + 1 < inputString.length() && inputString.charAt(i + 1) == '>';
+                    tokens.add(new Token(append
+                            ? TokenType.REDIRECT_STDOUT_APPEND
+                            : TokenType.REDIRECT_STDOUT, null));
+                    if (append) {
+                        i++;
+                    }
+                    continue;
+                }
+
+                if (ch == '<') {
+                    if (tokenStarted) {
+                        tokens.add(new Token(TokenType.WORD, current.toString()));
+                        current.setLength(0);
+                        tokenStarted = false;
+                    }
+                    boolean hereString = inputString.startsWith("<<<", i);
+                    tokens.add(new Token(hereString
+                            ? TokenType.REDIRECT_HERE_STRING
+                            : TokenType.REDIRECT_STDIN, null));
+                    if (hereString) {
+                        i += 2;
+                    }
+                    continue;
+                }
+            }
+
+            if (inDoubleQuotes && ch == '\\') {
+                if (i + 1 < inputString.length()) {
+                    char next = inputString.charAt(i + 1);
+                    if (next == '"' || next == '\\') {
+                        current.append(next);
+                        tokenStarted = true;
+                        i++;
+                        continue;
+                    }
+                }
+                current.append(ch);
+                tokenStarted = true;
+                continue;
+            }
+
+            if (ch == '\'' && !inDoubleQuotes) {
+                inSingleQuotes = !inSingleQuotes;
+                tokenStarted = true;
+                continue;
+            }
+
+            if (ch == '"' && !inSingleQuotes) {
+                inDoubleQuotes = !inDoubleQuotes;
+                tokenStarted = true;
+                continue;
+            }
+
+            if (!inSingleQuotes && !inDoubleQuotes && Character.isWhitespace(ch)) {
+                if (tokenStarted) {
+                    tokens.add(new Token(TokenType.WORD, current.toString()));
+                    current.setLength(0);
+                    tokenStarted = false;
+                }
+                continue;
+            }
+
+            current.append(ch);
+            tokenStarted = true;
+        }
+
+        if (tokenStarted) {
+            tokens.add(new Token(TokenType.WORD, current.toString()));
+        }
+
+        return tokens;
+    }
+}
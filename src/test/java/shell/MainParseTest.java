@@ -1,7 +1,11 @@
 package shell;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.Assumptions;
@@ -138,4 +142,129 @@ public class MainParseTest {
 
         assertEquals(List.of("test\\nexample"), command.getArgList());
     }
+
+    @Test
+    void parsePipeline_splitsStagesAndRedirects() {
+        CCParser.Pipeline pipeline = CCParser.parsePipeline("cat 'a|b' 2> err.txt | sort -r > out.txt");
+
+        assertEquals(2, pipeline.stages().size());
+        CCParser.Stage first = pipeline.stages().get(0);
+        assertEquals(List.of("cat", "a|b"), first.words());
+        assertEquals(List.of(new CCParser.Redirect(CCParser.RedirectType.STDERR, "err.txt")), first.redirects());
+        CCParser.Stage second = pipeline.stages().get(1);
+        assertEquals(List.of("sort", "-r"), second.words());
+        assertEquals(List.of(new CCParser.Redirect(CCParser.RedirectType.STDOUT, "out.txt")), second.redirects());
+    }
+
+    @Test
+    void parsePipeline_keepsWordsAfterRedirectTarget() {
+        CCParser.Pipeline pipeline = CCParser.parsePipeline("echo a >> log.txt b");
+
+        CCParser.Stage stage = pipeline.stages().get(0);
+        assertEquals(List.of("echo", "a", "b"), stage.words());
+        assertEquals(List.of(new CCParser.Redirect(CCParser.RedirectType.STDOUT_APPEND, "log.txt")),
+                stage.redirects());
+    }
+
+    @Test
+    void parsePipeline_collectsInputRedirects() {
+        CCParser.Pipeline pipeline = CCParser.parsePipeline("wc -l < in.txt <<< \"a b\"");
+
+        CCParser.Stage stage = pipeline.stages().get(0);
+        assertEquals(List.of("wc", "-l"), stage.words());
+        assertEquals(List.of(
+                        new CCParser.Redirect(CCParser.RedirectType.STDIN, "in.txt"),
+                        new CCParser.Redirect(CCParser.RedirectType.HERE_STRING, "a b")),
+                stage.redirects());
+    }
+
+    @Test
+    void parsePipeline_returnsNoStagesForBlankInput() {
+        assertEquals(0, CCParser.parsePipeline("   ").stages().size());
+    }
+
+    @Test
+    void parseList_splitsBackgroundJobs() {
+        List<CCParser.Pipeline> pipelines = CCParser.parseList("sleep 1 | cat & echo 'a&b'");
+
+        assertEquals(2, pipelines.size());
+        assertTrue(pipelines.get(0).background());
+        assertEquals(2, pipelines.get(0).stages().size());
+        assertFalse(pipelines.get(1).background());
+        assertEquals(List.of("echo", "a&b"), pipelines.get(1).stages().get(0).words());
+    }
+
+    @Test
+    void parseList_trailingAmpersandLeavesNoForegroundPipeline() {
+        List<CCParser.Pipeline> pipelines = CCParser.parseList("sleep 1 &  ");
+
+        assertEquals(1, pipelines.size());
+        assertTrue(pipelines.get(0).background());
+    }
+
+    @Test
+    void parseList_recordsListOperators() {
+        List<CCParser.Pipeline> pipelines = CCParser.parseList("false && echo a || echo b; echo 'c;d'");
+
+        assertEquals(4, pipelines.size());
+        assertEquals(CCParser.ListOperator.SEQUENCE, pipelines.get(0).operator());
+        assertEquals(CCParser.ListOperator.AND, pipelines.get(1).operator());
+        assertEquals(CCParser.ListOperator.OR, pipelines.get(2).operator());
+        assertEquals(CCParser.ListOperator.SEQUENCE, pipelines.get(3).operator());
+        assertEquals("echo a", pipelines.get(1).source());
+        assertEquals(List.of("echo", "c;d"), pipelines.get(3).stages().get(0).words());
+    }
+
+    @Test
+    void parseList_rejectsMisplacedOperators() {
+        CCParser.SyntaxException leading = assertThrows(CCParser.SyntaxException.class,
+                () -> CCParser.parseList("&& echo a"));
+        assertEquals("syntax error near unexpected token `&&'", leading.getMessage());
+        assertThrows(CCParser.SyntaxException.class, () -> CCParser.parseList("echo a ; ; echo b"));
+        assertThrows(CCParser.SyntaxException.class, () -> CCParser.parseList("echo a ||"));
+    }
+
+    @Test
+    void expandStatus_substitutesOutsideSingleQuotes() {
+        int[] statuses = {0, 1, 3};
+
+        assertEquals("echo 3 '$?' \\$? \"0 1 3\" 1 0", CCParser.expandStatus(
+                "echo $? '$?' \\$? \"${PIPESTATUS[@]}\" ${PIPESTATUS[1]} $PIPESTATUS", statuses));
+    }
+
+    @Test
+    void tokenizeSpans_matchesListTokenizer() {
+        List<String> lines = List.of(
+                "echo hello world",
+                "echo \"a|b\" | cat -n 2>> err.log",
+                "cat 'x y'\\ z\"q\\\"r\" >out 1>>app",
+                "ls a1>b 2>c",
+                "tr a-z A-Z<in.txt <<<'here string' << x",
+                "echo ''  \"\" trailing\\",
+                "sleep 1 & echo 'a&b'&",
+                "false&&echo a||echo b; echo 'c;d' \"e||f\"",
+                "echo 'unterminated | quote",
+                "  ");
+        CCParser.TokenSpans spans = new CCParser.TokenSpans();
+        for (String line : lines) {
+            CCParser.tokenizeSpans(line, spans);
+            List<ListTokenizer.Token> fromSpans = new ArrayList<>();
+            for (int i = 0; i < spans.size(); i++) {
+                ListTokenizer.TokenType type = ListTokenizer.TokenType.values()[spans.kind(i)];
+                String text = type == ListTokenizer.TokenType.WORD ? CCParser.spanText(line, spans, i) : null;
+                fromSpans.add(new ListTokenizer.Token(type, text));
+            }
+            assertEquals(ListTokenizer.tokenize(line), fromSpans, line);
+        }
+    }
+
+    @Test
+    void tokenizeSpans_flagsOnlyQuotedWords() {
+        CCParser.TokenSpans spans = new CCParser.TokenSpans();
+        CCParser.tokenizeSpans("echo plain 'quoted' esc\\aped", spans);
+
+        assertEquals(0, spans.flags(1) & CCParser.FLAG_UNQUOTE);
+        assertEquals(CCParser.FLAG_UNQUOTE, spans.flags(2) & CCParser.FLAG_UNQUOTE);
+        assertEquals(CCParser.FLAG_UNQUOTE, spans.flags(3) & CCParser.FLAG_UNQUOTE);
+    }
 }
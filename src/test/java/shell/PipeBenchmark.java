@@ -0,0 +1,90 @@
+package shell;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Moves 16 MiB between two threads through a {@link PipedInputStream} pair and through a
+ * {@link RingBufferPipe}, both with a 64 KiB buffer. One operation is one full transfer.
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=shell.PipeBenchmark
+ * -Dexec.classpathScope=test}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class PipeBenchmark {
+    private static final int TOTAL_BYTES = 16 * 1024 * 1024;
+
+    @Param({"512", "8192"})
+    public int chunkSize;
+
+    private byte[] writeChunk;
+    private final byte[] readChunk = new byte[8192];
+
+    @Benchmark
+    public long pipedStreams() throws Exception {
+        if (writeChunk == null || writeChunk.length != chunkSize) {
+            writeChunk = new byte[chunkSize];
+        }
+        PipedOutputStream out = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(out, RingBufferPipe.DEFAULT_CAPACITY);
+        return transfer(in, out);
+    }
+
+    @Benchmark
+    public long ringBufferPipe() throws Exception {
+        if (writeChunk == null || writeChunk.length != chunkSize) {
+            writeChunk = new byte[chunkSize];
+        }
+        RingBufferPipe pipe = new RingBufferPipe();
+        return transfer(pipe.source(), pipe.sink());
+    }
+
+    private long transfer(InputStream in, OutputStream out) throws Exception {
+        Thread writer = new Thread(() -> {
+            try (out) {
+                for (int sent = 0; sent < TOTAL_BYTES; sent += chunkSize) {
+                    out.write(writeChunk, 0, chunkSize);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        long received = 0;
+        int count;
+        while ((count = in.read(readChunk, 0, readChunk.length)) >= 0) {
+            received += count;
+        }
+        writer.join();
+        return received;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PipeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -6,6 +6,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
@@ -49,6 +51,21 @@ public class PipelineTest {
         assertEquals("HELLO" + System.lineSeparator(), output);
     }
 
+    @Test
+    void eval_builtinFeedsExternalSegment() {
+        String output = TestUtils.captureStdout(() -> shell.evalInput("echo hello | /bin/cat | tr a-z A-Z"));
+
+        assertEquals("HELLO" + System.lineSeparator(), output);
+    }
+
+    @Test
+    void eval_externalSegmentsAroundBuiltin() {
+        String command = "/bin/echo ignored | /bin/cat | echo middle | /bin/cat | tr a-z A-Z";
+        String output = TestUtils.captureStdout(() -> shell.evalInput(command));
+
+        assertEquals("MIDDLE" + System.lineSeparator(), output);
+    }
+
     @Test
     void eval_tailFollowPipesIntoHead(@TempDir Path tempDir) throws Exception {
         String tailPath = CommandResolver.findExecutable("tail");
@@ -183,4 +200,126 @@ public class PipelineTest {
         assertTrue(first >= 0);
         assertTrue(second > first);
     }
+
+    @Test
+    void eval_externalRedirectWritesFileDirectly() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+        Files.writeString(tempDir.resolve("out.txt"), "old contents that are longer" + System.lineSeparator());
+
+        String output = TestUtils.captureStdout(() -> shell.evalInput("/bin/echo hello > out.txt"));
+
+        assertEquals("", output);
+        assertEquals("hello" + System.lineSeparator(), Files.readString(tempDir.resolve("out.txt")));
+    }
+
+    @Test
+    void eval_externalRedirectsOpenEveryTargetAndLastWins() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+        Files.writeString(tempDir.resolve("first.txt"), "stale");
+
+        shell.evalInput("cat missing.txt 2> first.txt 2>> second.txt");
+
+        assertEquals("", Files.readString(tempDir.resolve("first.txt")));
+        assertTrue(Files.readString(tempDir.resolve("second.txt")).contains("missing.txt"));
+    }
+
+    @Test
+    void eval_externalRedirectInsidePipelineEndsDownstreamInput() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+
+        // The last stage reads to EOF, so it cannot finish (and tear down the writer) early.
+        String output = TestUtils.captureStdout(() -> shell.evalInput("/bin/echo hello > first.txt | /bin/cat | /bin/cat"));
+
+        assertEquals("", output);
+        assertEquals("hello" + System.lineSeparator(), Files.readString(tempDir.resolve("first.txt")));
+    }
+
+    @Test
+    void eval_feedsFileToExternalStdin() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+        Files.writeString(tempDir.resolve("in.txt"), "hello" + System.lineSeparator());
+
+        String output = TestUtils.captureStdout(() -> shell.evalInput("tr a-z A-Z < in.txt"));
+
+        assertEquals("HELLO" + System.lineSeparator(), output);
+    }
+
+    @Test
+    void eval_feedsHereStringToExternalStdin() {
+        String output = TestUtils.captureStdout(() -> shell.evalInput("tr a-z A-Z <<< 'two words'"));
+
+        assertEquals("TWO WORDS\n", output);
+    }
+
+    @Test
+    void eval_inputRedirectReplacesPipeInput() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+        Files.writeString(tempDir.resolve("in.txt"), "from file" + System.lineSeparator());
+
+        String output = TestUtils.captureStdout(() -> shell.evalInput("echo from pipe | /bin/cat < in.txt | tr a-z A-Z"));
+
+        assertEquals("FROM FILE" + System.lineSeparator(), output);
+    }
+
+    @Test
+    void eval_missingInputFileSkipsCommand() {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+
+        String[] output = new String[1];
+        String errors = TestUtils.captureStderr(
+                () -> output[0] = TestUtils.captureStdout(() -> shell.evalInput("echo hi < missing.txt")));
+
+        assertEquals("", output[0]);
+        assertEquals("echo: missing.txt: No such file or directory" + System.lineSeparator(), errors);
+    }
+
+    @Test
+    void eval_redirectsStageInsidePipeline() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+
+        String output = TestUtils.captureStdout(() -> shell.evalInput("echo hello > first.txt | echo done"));
+
+        assertEquals("done" + System.lineSeparator(), output);
+        assertEquals("hello" + System.lineSeparator(), Files.readString(tempDir.resolve("first.txt")));
+    }
+
+    @Test
+    void planSegments_keepsRedirectedExternalsInOneSegment() {
+        CCParser.Redirect toFile = new CCParser.Redirect(CCParser.RedirectType.STDOUT, "out");
+        CCParser.Redirect fromFile = new CCParser.Redirect(CCParser.RedirectType.STDIN, "in");
+        CCParser.Redirect errors = new CCParser.Redirect(CCParser.RedirectType.STDERR, "/dev/null");
+
+        assertEquals(List.of(2), segmentSizes(stage("grep", List.of()), stage("sort", List.of(toFile))));
+        assertEquals(List.of(3), segmentSizes(stage("cat", List.of(fromFile)), stage("grep", List.of(errors)),
+                stage("sort", List.of(toFile))));
+        // A redirect that replaces a pipe in the middle splits the run there.
+        assertEquals(List.of(1, 1), segmentSizes(stage("cat", List.of(toFile)), stage("sort", List.of())));
+        assertEquals(List.of(1, 1), segmentSizes(stage("cat", List.of()), stage("sort", List.of(fromFile))));
+    }
+
+    @Test
+    void eval_redirectsWithinAnExternalSegment() throws Exception {
+        context.setWorkspace(tempDir.toAbsolutePath().toString());
+        Files.writeString(tempDir.resolve("in.txt"), "b\na\n");
+
+        String output = TestUtils.captureStdout(
+                () -> shell.evalInput("/bin/cat < in.txt | sort 2> err.txt | tr a-z A-Z > out.txt"));
+
+        assertEquals("", output);
+        assertEquals("A\nB\n", Files.readString(tempDir.resolve("out.txt")));
+        assertEquals("", Files.readString(tempDir.resolve("err.txt")));
+    }
+
+    private Shell.BoundStage stage(String name, List<CCParser.Redirect> redirects) {
+        Command command = Command.build(context, name, "");
+        return new Shell.BoundStage(command, CommandResolver.runnerFor(command), redirects);
+    }
+
+    private static List<Integer> segmentSizes(Shell.BoundStage... stages) {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<Shell.BoundStage> segment : Shell.planSegments(List.of(stages))) {
+            sizes.add(segment.size());
+        }
+        return sizes;
+    }
 }
@@ -0,0 +1,93 @@
+package shell;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs a 50-stage pipeline that mixes builtins with external {@code cat} stages, once on platform
+ * threads and once on the shell's virtual threads. One operation is one full pipeline. The
+ * {@code peakPlatformThreads} counter is the JVM's peak live OS thread count during the iteration;
+ * the gc profiler reports the heap side. Run with {@code mvn test-compile exec:java
+ * -Dexec.mainClass=shell.PipelineThreadsBenchmark -Dexec.classpathScope=test}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineThreadsBenchmark {
+    private static final int STAGES = 50;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private Shell shell;
+    private String line;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCounters {
+        public long peakPlatformThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            THREADS.resetPeakThreadCount();
+            peakPlatformThreads = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ShellContext context = new ShellContext(System.getProperty("user.dir"));
+        context.setHistoryEnabled(false);
+        shell = new Shell(context);
+        List<String> stages = new ArrayList<>(STAGES);
+        for (int i = 0; i < STAGES - 1; i++) {
+            // Every fifth stage is a builtin, so the line never takes the all-external OS pipeline.
+            stages.add(i % 5 == 0 ? "echo stage " + i : "cat");
+        }
+        stages.add("cat > /dev/null");
+        line = String.join(" | ", stages);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dshell.platformThreads=true"})
+    public void platformThreads(ThreadCounters counters) {
+        runPipeline(counters);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "--enable-preview")
+    public void virtualThreads(ThreadCounters counters) {
+        runPipeline(counters);
+    }
+
+    private void runPipeline(ThreadCounters counters) {
+        shell.evalInput(line);
+        counters.peakPlatformThreads = Math.max(counters.peakPlatformThreads, THREADS.getPeakThreadCount());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PipelineThreadsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
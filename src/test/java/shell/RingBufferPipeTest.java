@@ -0,0 +1,92 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class RingBufferPipeTest {
+
+    @Test
+    void capacity_isRoundedUpToPowerOfTwo() {
+        assertEquals(16, new RingBufferPipe(10).capacity());
+        assertEquals(64, new RingBufferPipe(64).capacity());
+    }
+
+    @Test
+    void roundTrip_wrapsAroundSmallBuffer() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(16);
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try (OutputStream out = pipe.sink()) {
+                for (int i = 0; i < data.length; i += 7) {
+                    out.write(data, i, Math.min(7, data.length - i));
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        pipe.source().transferTo(received);
+        writer.join();
+
+        assertEquals(null, failure.get());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void read_returnsEndOfStreamAfterSinkClosedAndDrained() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(8);
+        pipe.sink().write('a');
+        pipe.sink().close();
+
+        InputStream in = pipe.source();
+        assertEquals('a', in.read());
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(new byte[4], 0, 4));
+    }
+
+    @Test
+    void write_failsWithBrokenPipeOnceSourceClosed() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(4);
+        pipe.source().close();
+
+        IOException error = assertThrows(IOException.class, () -> pipe.sink().write(new byte[8]));
+        assertEquals("Broken pipe", error.getMessage());
+    }
+
+    @Test
+    void write_blockedOnFullBufferIsReleasedWhenSourceCloses() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                pipe.sink().write(new byte[64]);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        while (pipe.source().available() < 4) {
+            Thread.onSpinWait();
+        }
+        pipe.source().close();
+        writer.join(5_000);
+
+        assertEquals(false, writer.isAlive());
+        assertEquals("Broken pipe", failure.get().getMessage());
+    }
+}
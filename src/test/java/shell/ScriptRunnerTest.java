@@ -0,0 +1,59 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ScriptRunnerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void run_executesLinesWithoutPrompt() throws Exception {
+        ShellContext context = new ShellContext(tempDir.toAbsolutePath().toString());
+        context.setHistoryEnabled(false);
+        Shell shell = new Shell(context);
+        String script = String.join("\n",
+                "#!/bin/sh",
+                "echo one",
+                "",
+                "   # comment",
+                "echo two | echo three");
+
+        AtomicLong executed = new AtomicLong();
+        String output = TestUtils.captureStdout(() -> {
+            try {
+                executed.set(ScriptRunner.run(shell, new StringReader(script)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertEquals("one" + System.lineSeparator() + "three" + System.lineSeparator(), output);
+        assertEquals(2, executed.get());
+        assertTrue(context.getHistory().isEmpty());
+    }
+
+    @Test
+    void runFile_streamsScriptFromDisk() throws Exception {
+        Path script = tempDir.resolve("script.sh");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("echo line").append(i).append(" >> out.txt\n");
+        }
+        Files.writeString(script, content);
+        Shell shell = new Shell(new ShellContext(tempDir.toAbsolutePath().toString()));
+
+        long executed = ScriptRunner.runFile(shell, script);
+
+        assertEquals(1000, executed);
+        assertEquals(1000, Files.readAllLines(tempDir.resolve("out.txt")).size());
+    }
+}
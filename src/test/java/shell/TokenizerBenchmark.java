@@ -0,0 +1,83 @@
+package shell;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the list-building tokenizer with the span tokenizer, one operation per input line.
+ * Run with {@code mvn test-compile exec:java -Dexec.mainClass=shell.TokenizerBenchmark
+ * -Dexec.classpathScope=test}; the gc profiler's {@code gc.alloc.rate.norm} is bytes per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class TokenizerBenchmark {
+    private static final String[] LINES = {
+            "ls -la /usr/local/bin",
+            "grep -rn pattern src/main/java | sort | uniq -c",
+            "echo hello world > out.txt",
+            "cat /var/log/syslog 2>> errors.log",
+            "git commit -m 'fix the build' --no-verify",
+            "find . -name \"*.java\" -newer pom.xml",
+            "tar czf backup.tgz dir1 dir2 dir3",
+            "cp my\\ file.txt /tmp/target"
+    };
+
+    private final CCParser.TokenSpans spans = new CCParser.TokenSpans();
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void listTokenizer(Blackhole blackhole) {
+        for (String line : LINES) {
+            List<ListTokenizer.Token> tokens = ListTokenizer.tokenize(line);
+            blackhole.consume(tokens);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void spanTokenizer(Blackhole blackhole) {
+        for (String line : LINES) {
+            CCParser.tokenizeSpans(line, spans);
+            // Materialize each word, as the list tokenizer does, so both do the same work.
+            for (int i = 0; i < spans.size(); i++) {
+                if (spans.kind(i) == CCParser.KIND_WORD) {
+                    blackhole.consume(CCParser.spanText(line, spans, i));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void parsePipeline(Blackhole blackhole) {
+        for (String line : LINES) {
+            blackhole.consume(CCParser.parsePipeline(line));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TokenizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package shell;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class XargsCommandTest {
+
+    private static final String NL = System.lineSeparator();
+
+    private Shell shell;
+
+    @BeforeEach
+    void resetWorkspace() {
+        shell = new Shell(new ShellContext(System.getProperty("user.dir")));
+    }
+
+    @Test
+    void xargs_batchesByArgumentCount() {
+        String output = TestUtils.captureStdout(() -> shell.evalInput("xargs -n 2 echo <<< 'a b c d e'"));
+
+        assertEquals("a b" + NL + "c d" + NL + "e" + NL, output);
+    }
+
+    @Test
+    void xargs_batchesBySize() {
+        // "echo" costs 13 bytes and each two-letter argument 11, so a 30-byte limit fits one argument.
+        String output = TestUtils.captureStdout(() -> shell.evalInput("xargs -s 30 echo <<< 'aa bb cc'"));
+
+        assertEquals("aa" + NL + "bb" + NL + "cc" + NL, output);
+    }
+
+    @Test
+    void xargs_defaultsToEchoAndHonoursQuotes() {
+        String output = TestUtils.captureStdout(() -> shell.evalInput("xargs <<< \"'a  b' c\\\\ d\""));
+
+        assertEquals("a  b c d" + NL, output);
+    }
+
+    @Test
+    void xargs_runsExternalsInParallel() {
+        String output = TestUtils.captureStdout(
+                () -> shell.evalInput("echo 1 2 3 4 5 6 | xargs -P 4 -n 1 /bin/echo | sort"));
+
+        assertEquals("1" + NL + "2" + NL + "3" + NL + "4" + NL + "5" + NL + "6" + NL, output);
+    }
+
+    @Test
+    void xargs_groupKeepsEachInvocationTogether() {
+        String output = TestUtils.captureStdout(
+                () -> shell.evalInput("xargs -P 3 -n 2 --group /bin/echo <<< 'a b c d e f'"));
+
+        List<String> lines = Arrays.asList(output.split(NL));
+        lines.sort(null);
+        assertEquals(List.of("a b", "c d", "e f"), lines);
+    }
+
+    @Test
+    void xargs_reportsUnknownCommand() {
+        String error = TestUtils.captureStderr(() -> shell.evalInput("xargs no-such-command-xyz <<< a"));
+
+        assertEquals("xargs: no-such-command-xyz: No such file or directory" + NL, error);
+    }
+
+    @Test
+    void xargs_rejectsBadNumber() {
+        String error = TestUtils.captureStderr(() -> shell.evalInput("xargs -P x echo <<< a"));
+
+        assertEquals("xargs: invalid number \"x\" for -P option" + NL, error);
+    }
+
+    @Test
+    void xargs_rejectsUnknownOption() {
+        String error = TestUtils.captureStderr(() -> shell.evalInput("xargs -I {} echo {} <<< a"));
+
+        assertEquals("xargs: invalid option -- 'I'" + NL, error);
+        assertEquals(1, shell.getContext().getExitStatus());
+    }
+}